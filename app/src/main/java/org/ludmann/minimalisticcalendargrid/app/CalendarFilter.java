@@ -0,0 +1,226 @@
+package org.ludmann.minimalisticcalendargrid.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.provider.CalendarContract;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The calendars whose events are shown.
+ * <p/>
+ * The visible calendars of the provider are read once and kept until the provider changes (see
+ * {@link CalendarObserver}); the calendar picker of the {@link CalendarView} shows them. The chosen calendars are kept
+ * in the preferences and compiled into the selection of the instance queries ({@link #getSelectionArgs()} and
+ * {@link #getSelection(String[])}), so the events of the other calendars never leave the provider. Without a choice
+ * the events of all visible calendars are shown.
+ * <p/>
+ * The stand-in provider of the tests (see {@link InstanceSource}) ignores the selection.
+ *
+ * @author Cornelius Ludmann
+ */
+public class CalendarFilter {
+
+    /**
+     * The columns of the calendars.
+     */
+    private static final String[] CALENDAR_PROJECTION = new String[]{
+            CalendarContract.Calendars._ID,                     // 0
+            CalendarContract.Calendars.CALENDAR_DISPLAY_NAME,   // 1
+            CalendarContract.Calendars.ACCOUNT_NAME,            // 2
+            CalendarContract.Calendars.CALENDAR_COLOR           // 3
+    };
+    private static final String CALENDARS_SELECTION =
+            CalendarContract.Calendars.VISIBLE + "=1";
+    private static final String CALENDARS_SORT_ORDER =
+            CalendarContract.Calendars.ACCOUNT_NAME + " ASC, " + CalendarContract.Calendars.CALENDAR_DISPLAY_NAME + " ASC";
+
+    /**
+     * The selection of the instances without a choice.
+     */
+    private static final String EVENTS_SELECTION =
+            CalendarContract.Instances.VISIBLE + "=1";
+
+    private static final String PREFERENCES = "calendar_filter";
+    private static final String KEY_CALENDARS = "calendars";
+
+    private static CalendarFilter instance;
+
+    private final Context context;
+    private final SharedPreferences preferences;
+    /**
+     * The chosen calendar ids as selection arguments or null for all calendars.
+     */
+    private volatile String[] selectionArgs;
+    /**
+     * The calendars of the provider and the {@link CalendarObserver} generation they were read at. Guarded by this.
+     */
+    private CalendarList calendars;
+    private int calendarsGeneration;
+
+    private CalendarFilter(Context context, SharedPreferences preferences) {
+        this.context = context;
+        this.preferences = preferences;
+        selectionArgs = toSelectionArgs(preferences.getStringSet(KEY_CALENDARS, null));
+    }
+
+    /**
+     * @param context A context to get the preferences.
+     * @return The process wide filter.
+     */
+    public static synchronized CalendarFilter getInstance(Context context) {
+        if (instance == null) {
+            Context applicationContext = context.getApplicationContext();
+            instance = new CalendarFilter(applicationContext,
+                    applicationContext.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE));
+        }
+        return instance;
+    }
+
+    /**
+     * A load must read the {@link CalendarObserver} generation it caches its result with before the selection.
+     *
+     * @return The arguments of {@link #getSelection(String[])}: the ids of the chosen calendars or null if the events
+     * of all visible calendars are shown.
+     */
+    public String[] getSelectionArgs() {
+        return selectionArgs;
+    }
+
+    /**
+     * Builds the selection of an instance query. The selection and its arguments must come from the same call of
+     * {@link #getSelectionArgs()}, so a change of the choice in between does not break the query.
+     *
+     * @param selectionArgs The result of {@link #getSelectionArgs()}.
+     * @return The selection: visible instances of the chosen calendars.
+     */
+    public static String getSelection(String[] selectionArgs) {
+        if (selectionArgs == null)
+            return EVENTS_SELECTION;
+        StringBuilder selection = new StringBuilder(EVENTS_SELECTION)
+                .append(" AND ").append(CalendarContract.Instances.CALENDAR_ID).append(" IN (");
+        for (int i = 0; i < selectionArgs.length; ++i) {
+            selection.append(i == 0 ? "?" : ",?");
+        }
+        return selection.append(')').toString();
+    }
+
+    /**
+     * @param calendarId The id of a calendar.
+     * @return True if the events of the calendar are shown.
+     */
+    public boolean isChosen(long calendarId) {
+        String[] args = selectionArgs;
+        return args == null || Arrays.asList(args).contains(String.valueOf(calendarId));
+    }
+
+    /**
+     * Chooses the calendars whose events are shown. The {@link CalendarObserver} generations are counted up, so the
+     * months that are still being loaded with the old choice are not cached. The caches of the loaded months should be
+     * cleared afterwards.
+     *
+     * @param calendarIds The ids of the chosen calendars (at least one) or null for all calendars.
+     * @throws IllegalArgumentException If no calendar is chosen.
+     */
+    public void setChosen(long[] calendarIds) {
+        if (calendarIds != null && calendarIds.length == 0)
+            throw new IllegalArgumentException("no calendar chosen");
+        if (calendarIds == null) {
+            preferences.edit().remove(KEY_CALENDARS).apply();
+            selectionArgs = null;
+        } else {
+            Set<String> ids = new HashSet<String>();
+            for (long calendarId : calendarIds) {
+                ids.add(String.valueOf(calendarId));
+            }
+            preferences.edit().putStringSet(KEY_CALENDARS, ids).apply();
+            selectionArgs = toSelectionArgs(ids);
+        }
+        // after the new selection: a load that reads the new generation (before the selection) queries the new choice
+        CalendarObserver.getInstance(context).invalidate();
+    }
+
+    private static String[] toSelectionArgs(Set<String> ids) {
+        if (ids == null)
+            return null;
+        String[] args = ids.toArray(new String[ids.size()]);
+        // same order on every query
+        Arrays.sort(args);
+        return args;
+    }
+
+    /**
+     * Returns the visible calendars of the provider. They are only queried again if the provider has changed since
+     * the last call. Must not be called on the UI thread.
+     *
+     * @return The calendars.
+     */
+    public synchronized CalendarList getCalendars() {
+        int generation = CalendarObserver.getInstance(context).getGeneration();
+        if (calendars != null && calendarsGeneration == generation)
+            return calendars;
+
+        Cursor cursor = context.getContentResolver().query(CalendarContract.Calendars.CONTENT_URI, CALENDAR_PROJECTION,
+                CALENDARS_SELECTION, null, CALENDARS_SORT_ORDER);
+        int count = cursor == null ? 0 : cursor.getCount();
+        long[] ids = new long[count];
+        String[] names = new String[count];
+        String[] accounts = new String[count];
+        int[] colors = new int[count];
+        if (cursor != null) {
+            try {
+                for (int i = 0; i < count && cursor.moveToNext(); ++i) {
+                    ids[i] = cursor.getLong(0);
+                    names[i] = cursor.getString(1);
+                    accounts[i] = cursor.getString(2);
+                    colors[i] = cursor.getInt(3);
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        calendars = new CalendarList(ids, names, accounts, colors);
+        calendarsGeneration = generation;
+        return calendars;
+    }
+
+    /**
+     * Immutable list of the calendars of the provider.
+     */
+    public static final class CalendarList {
+        private final long[] ids;
+        private final String[] names;
+        private final String[] accounts;
+        private final int[] colors;
+
+        private CalendarList(long[] ids, String[] names, String[] accounts, int[] colors) {
+            this.ids = ids;
+            this.names = names;
+            this.accounts = accounts;
+            this.colors = colors;
+        }
+
+        public int size() {
+            return ids.length;
+        }
+
+        public long getId(int index) {
+            return ids[index];
+        }
+
+        public String getName(int index) {
+            return names[index];
+        }
+
+        public String getAccount(int index) {
+            return accounts[index];
+        }
+
+        public int getColor(int index) {
+            return colors[index];
+        }
+    }
+}
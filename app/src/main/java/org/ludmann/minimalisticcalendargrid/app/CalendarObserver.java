@@ -0,0 +1,130 @@
+package org.ludmann.minimalisticcalendargrid.app;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.ContentObserver;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.CalendarContract;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Observes the instances and events of the calendar provider and counts the changes.
+ * <p/>
+ * Every loaded month remembers the generation it was loaded with. If the generation has not changed, the data is
+ * still up to date and there is no need to query the provider again.
+ * <p/>
+ * The generation starts at 0 with every process. For data that outlives the process (the {@link InstanceDiskCache})
+ * there is a second, stored generation. It is counted up by the observer and by the {@link ProviderChangedReceiver},
+ * which gets the changes of the provider while the app is not running.
+ *
+ * @author Cornelius Ludmann
+ */
+public class CalendarObserver extends ContentObserver {
+
+    /**
+     * Listener for changes of the calendar provider. Called on the UI thread.
+     */
+    public interface OnCalendarChangeListener {
+        void onCalendarChange();
+    }
+
+    private static final String PREFERENCES = "calendar_observer";
+    private static final String KEY_STORED_GENERATION = "stored_generation";
+
+    private static CalendarObserver instance;
+
+    private final AtomicInteger generation = new AtomicInteger();
+    private final List<OnCalendarChangeListener> listeners = new ArrayList<OnCalendarChangeListener>();
+    private final SharedPreferences preferences;
+
+    private CalendarObserver(SharedPreferences preferences) {
+        super(new Handler(Looper.getMainLooper()));
+        this.preferences = preferences;
+    }
+
+    /**
+     * @param context A context to register the observer.
+     * @return The process wide observer.
+     */
+    public static synchronized CalendarObserver getInstance(Context context) {
+        if (instance == null) {
+            instance = new CalendarObserver(getPreferences(context));
+            ContentResolver contentResolver = context.getApplicationContext().getContentResolver();
+            contentResolver.registerContentObserver(CalendarContract.Instances.CONTENT_URI, true, instance);
+            contentResolver.registerContentObserver(CalendarContract.Events.CONTENT_URI, true, instance);
+        }
+        return instance;
+    }
+
+    /**
+     * @return The number of changes of the calendar provider since the start of the app.
+     */
+    public int getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * @return The number of changes of the calendar provider since the installation of the app.
+     */
+    public int getStoredGeneration() {
+        return preferences.getInt(KEY_STORED_GENERATION, 0);
+    }
+
+    /**
+     * Counts up the stored generation.
+     *
+     * @param context A context to get the preferences.
+     */
+    public static void incrementStoredGeneration(Context context) {
+        incrementStoredGeneration(getPreferences(context));
+    }
+
+    private static synchronized void incrementStoredGeneration(SharedPreferences preferences) {
+        preferences.edit().putInt(KEY_STORED_GENERATION, preferences.getInt(KEY_STORED_GENERATION, 0) + 1).apply();
+    }
+
+    /**
+     * Counts up both generations without a change of the provider, e. g. because other calendars were chosen: all
+     * loaded months are outdated, also those whose load is still running. The listeners are not called.
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+        incrementStoredGeneration(preferences);
+    }
+
+    private static SharedPreferences getPreferences(Context context) {
+        return context.getApplicationContext().getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Adds a listener. Must be called on the UI thread.
+     *
+     * @param listener The listener.
+     */
+    public void addListener(OnCalendarChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener. Must be called on the UI thread.
+     *
+     * @param listener The listener.
+     */
+    public void removeListener(OnCalendarChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public void onChange(boolean selfChange) {
+        generation.incrementAndGet();
+        incrementStoredGeneration(preferences);
+        for (int i = listeners.size() - 1; i >= 0; --i) {
+            listeners.get(i).onCalendarChange();
+        }
+    }
+}
@@ -4,38 +4,50 @@ import android.app.AlertDialog;
 import android.app.Dialog;
 import android.app.DialogFragment;
 import android.app.LoaderManager;
-import android.content.ContentUris;
-import android.content.CursorLoader;
+import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.Loader;
 import android.content.pm.PackageManager;
-import android.database.Cursor;
-import android.net.Uri;
+import android.os.AsyncTask;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.provider.CalendarContract;
 import android.support.v4.view.GestureDetectorCompat;
 import android.support.v7.app.ActionBarActivity;
+import android.text.Editable;
 import android.text.Html;
+import android.text.TextWatcher;
 import android.text.method.LinkMovementMethod;
+import android.util.Log;
 import android.view.GestureDetector;
 import android.view.LayoutInflater;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.MotionEvent;
 import android.view.View;
-import android.view.ViewGroup;
+import android.view.inputmethod.InputMethodManager;
 import android.widget.AdapterView;
 import android.widget.ArrayAdapter;
 import android.widget.Button;
-import android.widget.LinearLayout;
+import android.widget.EditText;
+import android.widget.ListView;
 import android.widget.NumberPicker;
-import android.widget.ScrollView;
 import android.widget.Spinner;
 import android.widget.TableRow;
 import android.widget.TextView;
+import android.widget.Toast;
 
+import org.ludmann.minimalisticcalendargrid.core.CalendarMath;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.DateFormat;
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
 
 
 /**
@@ -43,39 +55,37 @@ import java.util.Calendar;
  *
  * @author Cornelius Ludmann
  */
-public class CalendarView extends ActionBarActivity implements LoaderManager.LoaderCallbacks<Cursor> {
+public class CalendarView extends ActionBarActivity implements LoaderManager.LoaderCallbacks<MonthModel> {
 
     /**
-     * The event fields to query.
+     * ID for the loader that reads the events.
      */
-    private static final String[] EVENTS_PROJECTION = new String[]{
-            CalendarContract.Instances._ID,                // 0
-            CalendarContract.Instances.TITLE,              // 1
-            CalendarContract.Instances.BEGIN,              // 2
-            CalendarContract.Instances.END,                // 3
-            CalendarContract.Instances.ALL_DAY,            // 4
-            CalendarContract.Instances.VISIBLE,            // 5
-            CalendarContract.Instances.DISPLAY_COLOR       // 6
-    };
+    private static final int EVENTS_LOADER_ID = 0;
     /**
-     * The selection string for the events.
+     * ID for the loader that prefetches the previous month.
      */
-    private static final String EVENTS_SELECTION =
-            CalendarContract.Instances.VISIBLE + "=1";
-
+    private static final int PREVIOUS_MONTH_LOADER_ID = 1;
     /**
-     * ID for the loader that reads the events.
+     * ID for the loader that prefetches the next month.
      */
-    private static final int EVENTS_LOADER_ID = 0;
+    private static final int NEXT_MONTH_LOADER_ID = 2;
 
     /**
-     * start timestamp key for bundle
+     * month key for bundle
      */
-    private static final String START_TS = "startTS";
+    private static final String MONTH_KEY = "month";
     /**
-     * end timestamp key for bundle
+     * year key for bundle
      */
-    private static final String END_TS = "endTS";
+    private static final String YEAR_KEY = "year";
+    /**
+     * Request code of the year overview.
+     */
+    private static final int YEAR_OVERVIEW_REQUEST = 1;
+    /**
+     * Navigation requests within this time (ms) are coalesced into one load of the last requested month.
+     */
+    private static final int NAVIGATION_DEBOUNCE = 150;
 
 
     /**
@@ -91,9 +101,76 @@ public class CalendarView extends ActionBarActivity implements LoaderManager.Loa
      */
     private int year;
     /**
-     * The highest number of events in this month. (needed for a hack to equalize the row heights)
+     * Draws the month.
+     */
+    private MonthGridView monthGrid;
+    /**
+     * Counts the changes of the calendar provider.
+     */
+    private CalendarObserver calendarObserver;
+    /**
+     * The {@link CalendarObserver} generation of the last requested load.
+     */
+    private int requestedGeneration;
+    /**
+     * The day of the last requested load (needed to move the mark of the current day).
+     */
+    private int requestedDay;
+    /**
+     * Reloads the month if the calendar provider changes while the activity is in the foreground.
+     */
+    private final CalendarObserver.OnCalendarChangeListener calendarChangeListener = new CalendarObserver.OnCalendarChangeListener() {
+        @Override
+        public void onCalendarChange() {
+            update();
+            // the search skips the outdated months until they are indexed again
+            if (searchPanel != null && searchPanel.getVisibility() == View.VISIBLE) {
+                runSearch();
+                startSearchFill();
+            }
+        }
+    };
+    /**
+     * {@link System#nanoTime()} of the last requested load (for the {@link StageTimer}).
      */
-    private int maxNoEvents = 0;
+    private long requestedTime;
+    /**
+     * Shows the {@link StageTimer} report (debug builds only).
+     */
+    private TextView timingOverlay;
+    /**
+     * {@link SystemClock#uptimeMillis()} of the last navigation request.
+     */
+    private long lastNavigation;
+    /**
+     * Starts the load of the current month after the navigation has paused.
+     */
+    private final Runnable loadMonthRunnable = new Runnable() {
+        @Override
+        public void run() {
+            loadMonth();
+        }
+    };
+    /**
+     * The last month that was written into the {@link MonthSnapshot}.
+     */
+    private MonthModel snapshotModel;
+    /**
+     * Event search (see {@link SearchIndex}), set up on first use.
+     */
+    private View searchPanel;
+    private EditText searchQuery;
+    private ArrayAdapter<String> searchAdapter;
+    private DateFormat searchDateFormat;
+    private DateFormat searchTimeFormat;
+    /**
+     * The results shown in the search panel.
+     */
+    private List<SearchIndex.Result> searchResults = Collections.emptyList();
+    /**
+     * Indexes the months around the displayed month while the search panel is shown.
+     */
+    private AsyncTask<Void, Void, Void> searchFillTask;
     /**
      * For detecting the swipe gesture.
      */
@@ -202,14 +279,25 @@ public class CalendarView extends ActionBarActivity implements LoaderManager.Loa
         // init weekday labels
         setWeekdayLabels();
 
-        // Loader Manager that reads the calendar database
-        Calendar firstDayOfMonth = CalendarLabels.getFirstDayOfMonth(month, year);
-        Calendar lastDayOfMonth = CalendarLabels.getLastDayOfMonth(month, year);
+        monthGrid = (MonthGridView) findViewById(R.id.month_grid);
+        monthGrid.setOnDayClickListener(new MonthGridView.OnDayClickListener() {
+            @Override
+            public void onDayClick(Calendar day) {
+                dayClick(day);
+            }
+        });
 
+        // Loader Manager that reads the calendar database
+        calendarObserver = CalendarObserver.getInstance(this);
         Bundle bundle = new Bundle();
-        bundle.putLong(START_TS, firstDayOfMonth.getTimeInMillis());
-        bundle.putLong(END_TS, lastDayOfMonth.getTimeInMillis());
+        bundle.putInt(MONTH_KEY, month);
+        bundle.putInt(YEAR_KEY, year);
         getLoaderManager().initLoader(EVENTS_LOADER_ID, bundle, this);
+        requestedGeneration = calendarObserver.getGeneration();
+        requestedDay = getDayStamp(now);
+
+        // draw the last known state of the month until the loader has finished
+        monthGrid.setModel(MonthSnapshot.read(this, month, year));
 
 
         // swipe gestures for month change
@@ -219,7 +307,39 @@ public class CalendarView extends ActionBarActivity implements LoaderManager.Loa
     @Override
     protected void onResume() {
         super.onResume();
-        update();
+        calendarObserver.addListener(calendarChangeListener);
+
+        // only reload if something has changed since the last load
+        if (requestedGeneration != calendarObserver.getGeneration()) {
+            update();
+        } else if (requestedDay != getDayStamp(Calendar.getInstance())) {
+            // the cached months mark the wrong day
+            MonthCache.getInstance(this).evictAll();
+            update();
+        }
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        calendarObserver.removeListener(calendarChangeListener);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (searchFillTask != null) {
+            searchFillTask.cancel(false);
+        }
+    }
+
+    @Override
+    public void onBackPressed() {
+        if (searchPanel != null && searchPanel.getVisibility() == View.VISIBLE) {
+            hideSearch();
+            return;
+        }
+        super.onBackPressed();
     }
 
     @Override
@@ -227,6 +347,9 @@ public class CalendarView extends ActionBarActivity implements LoaderManager.Loa
 
         // Inflate the menu; this adds items to the action bar if it is present.
         getMenuInflater().inflate(R.menu.calendar_view, menu);
+        menu.findItem(R.id.action_timing).setVisible(BuildConfig.DEBUG);
+        menu.findItem(R.id.action_query_by_day).setVisible(BuildConfig.DEBUG)
+                .setChecked(MonthLoader.isQueryByDay(this));
         return true;
     }
 
@@ -258,6 +381,26 @@ public class CalendarView extends ActionBarActivity implements LoaderManager.Loa
                 // Make the textview clickable. Must be called after show()
                 ((TextView) dialog.findViewById(android.R.id.message)).setMovementMethod(LinkMovementMethod.getInstance());
                 return true;
+            case R.id.action_calendars:
+                showCalendarPicker();
+                return true;
+            case R.id.action_search:
+                showSearch();
+                return true;
+            case R.id.action_timing:
+                if (timingOverlay != null && timingOverlay.getVisibility() == View.VISIBLE) {
+                    timingOverlay.setVisibility(View.GONE);
+                    return true;
+                }
+                showTimingReport();
+                return true;
+            case R.id.action_query_by_day:
+                item.setChecked(!item.isChecked());
+                MonthLoader.setQueryByDay(this, item.isChecked());
+                // the cached months were loaded with the other query
+                clearCaches();
+                update();
+                return true;
             case R.id.action_today:
                 setMonthAndYear(Calendar.getInstance().get(Calendar.MONTH), Calendar.getInstance().get(Calendar.YEAR));
                 return true;
@@ -282,7 +425,15 @@ public class CalendarView extends ActionBarActivity implements LoaderManager.Loa
 
                 startActivity(calIntent);
                 return true;
+            case R.id.action_weeks:
+                Intent weeksIntent = new Intent(this, WeeksView.class);
+                weeksIntent.putExtra(WeeksView.EXTRA_MONTH, month);
+                weeksIntent.putExtra(WeeksView.EXTRA_YEAR, year);
+                startActivity(weeksIntent);
+                return true;
             case R.id.action_reload:
+                // forced reload: don't use the cached months
+                clearCaches();
                 update();
                 return true;
         }
@@ -308,6 +459,10 @@ public class CalendarView extends ActionBarActivity implements LoaderManager.Loa
 
     /**
      * This method updates the view. This should be called after each update of month or year.
+     * <p/>
+     * The grid shows the month at once (from the {@link MonthCache} or without events); the load of the events is
+     * debounced: if the user navigates quickly, the loads of the skipped months are cancelled and only the last month
+     * is queried.
      */
     private void update() {
 
@@ -331,188 +486,336 @@ public class CalendarView extends ActionBarActivity implements LoaderManager.Loa
 //        }
 
 
-        maxNoEvents = 0;
+        // show the days of the month while the events are loading (a reload keeps the old events)
+        MonthModel model = MonthCache.getInstance(this).get(month, year);
+        MonthModel shown = monthGrid.getModel();
+        if (model == null && shown != null && shown.getMonth() == month && shown.getYear() == year) {
+            model = shown;
+        } else if (model == null) {
+            GridGeometry geometry = GridGeometryCache.getInstance(this).get(month, year);
+            model = MonthModel.empty(geometry, MonthLoader.getTodayCell(geometry));
+        }
+        monthGrid.setModel(model);
+        findViewById(R.id.progressBar).setVisibility(View.VISIBLE);
+
+        // the running load is for a month the user has left
+        Loader<MonthModel> loader = getLoaderManager().getLoader(EVENTS_LOADER_ID);
+        if (loader != null) {
+            loader.cancelLoad();
+        }
+        monthGrid.removeCallbacks(loadMonthRunnable);
+        long navigation = SystemClock.uptimeMillis();
+        if (navigation - lastNavigation >= NAVIGATION_DEBOUNCE) {
+            loadMonth();
+        } else {
+            monthGrid.postDelayed(loadMonthRunnable, NAVIGATION_DEBOUNCE);
+        }
+        lastNavigation = navigation;
 
-        Calendar firstDayOfMonth = CalendarLabels.getFirstDayOfMonth(month, year);
-        Calendar lastDayOfMonth = CalendarLabels.getLastDayOfMonth(month, year);
+        requestedGeneration = calendarObserver.getGeneration();
+        requestedDay = getDayStamp(now);
+        requestedTime = System.nanoTime();
+    }
 
+    /**
+     * Restarts the loader of the displayed month.
+     */
+    private void loadMonth() {
         Bundle bundle = new Bundle();
-        bundle.putLong(START_TS, firstDayOfMonth.getTimeInMillis());
-        bundle.putLong(END_TS, lastDayOfMonth.getTimeInMillis());
+        bundle.putInt(MONTH_KEY, month);
+        bundle.putInt(YEAR_KEY, year);
         getLoaderManager().restartLoader(EVENTS_LOADER_ID, bundle, this);
     }
 
     /**
-     * It's a hack to get rows with equal height. Maybe, there is a better solution ...
-     *
-     * @param viewId ID of the row.
+     * Shows the search panel. The results are updated on every keystroke; the months around the displayed month that
+     * are not indexed yet are indexed in the background (see {@link SearchIndex#fill}).
      */
-    private void setDummyEvents(int viewId) {
-        TableRow row = (TableRow) findViewById(viewId);
-        if (row.getVisibility() == View.GONE)
-            return;
+    private void showSearch() {
+        if (searchPanel == null) {
+            searchPanel = findViewById(R.id.search_panel);
+            searchQuery = (EditText) findViewById(R.id.search_query);
+            searchAdapter = new ArrayAdapter<String>(this, android.R.layout.simple_list_item_1);
+            // the days of the grid are UTC days, the times are local
+            searchDateFormat = DateFormat.getDateInstance(DateFormat.MEDIUM);
+            searchDateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+            searchTimeFormat = android.text.format.DateFormat.getTimeFormat(this);
+
+            ListView resultList = (ListView) findViewById(R.id.search_results);
+            resultList.setAdapter(searchAdapter);
+            resultList.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+                @Override
+                public void onItemClick(AdapterView<?> adapterView, View view, int position, long id) {
+                    openSearchResult(searchResults.get(position));
+                }
+            });
+            searchQuery.addTextChangedListener(new TextWatcher() {
+                @Override
+                public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+                }
 
-        LayoutInflater inflater = getLayoutInflater();
+                @Override
+                public void onTextChanged(CharSequence s, int start, int before, int count) {
+                }
 
-        final ViewGroup cellViewGroup = (ViewGroup) row.getChildAt(0);
+                @Override
+                public void afterTextChanged(Editable s) {
+                    runSearch();
+                }
+            });
+        }
+        searchPanel.setVisibility(View.VISIBLE);
+        searchQuery.requestFocus();
+        ((InputMethodManager) getSystemService(Context.INPUT_METHOD_SERVICE))
+                .showSoftInput(searchQuery, InputMethodManager.SHOW_IMPLICIT);
+        runSearch();
+        startSearchFill();
+    }
 
-        if (cellViewGroup.getChildCount() + 1 < maxNoEvents) {
-            // Add new (empty) dummy text views.
-            for (int i = cellViewGroup.getChildCount() + 1; i <= maxNoEvents; ++i) {
-                TextView textView = (TextView) inflater.inflate(R.layout.event, null);
-                textView.setText("");
-                cellViewGroup.addView(textView);
-            }
-        } else if (cellViewGroup.getChildCount() + 1 > maxNoEvents) {
-            // Remove unnecessary dummy text views
-            for (int i = maxNoEvents; i < cellViewGroup.getChildCount(); ++i) {
-                cellViewGroup.removeViewAt(i);
-            }
+    private void hideSearch() {
+        searchPanel.setVisibility(View.GONE);
+        ((InputMethodManager) getSystemService(Context.INPUT_METHOD_SERVICE))
+                .hideSoftInputFromWindow(searchQuery.getWindowToken(), 0);
+        if (searchFillTask != null) {
+            searchFillTask.cancel(false);
+            searchFillTask = null;
         }
     }
 
     /**
-     * Removes all events in a row.
-     *
-     * @param viewId The row ID.
+     * Searches the query of the search panel in the {@link SearchIndex} and shows the results.
      */
-    private void removeAllEvents(int viewId) {
-        TableRow row = (TableRow) findViewById(viewId);
-        if (row.getVisibility() == View.GONE)
-            return;
-
-        for (int childNo = 1; childNo < row.getChildCount(); ++childNo) {
-            final ViewGroup cellViewGroup = (ViewGroup) row.getChildAt(childNo);
-            if (cellViewGroup.getChildCount() >= 2) {
-                ViewGroup eventsViewGroup = (ViewGroup) ((ViewGroup) cellViewGroup.getChildAt(1)).getChildAt(0);
-
-                eventsViewGroup.removeAllViews();
+    private void runSearch() {
+        searchResults = SearchIndex.getInstance(this).search(searchQuery.getText().toString());
+        searchAdapter.setNotifyOnChange(false);
+        searchAdapter.clear();
+        Date date = new Date();
+        for (SearchIndex.Result result : searchResults) {
+            date.setTime(result.getBegin());
+            StringBuilder label = new StringBuilder(searchDateFormat.format(date));
+            if (!result.isAllDay()) {
+                label.append(' ').append(searchTimeFormat.format(date));
+            }
+            label.append("  ").append(result.getTitle());
+            if (result.getLocation() != null && result.getLocation().length() > 0) {
+                label.append(" (").append(result.getLocation()).append(')');
             }
+            searchAdapter.add(label.toString());
         }
+        searchAdapter.notifyDataSetChanged();
     }
 
     /**
-     * Sets day header and adds events.
-     *
-     * @param viewId   The row ID.
-     * @param calendar First day of the month.
-     * @param cursor   The cursor with all events of the month.
-     */
-    private void updateRow(int viewId, Calendar calendar, Cursor cursor) {
-        TableRow row = (TableRow) findViewById(viewId);
-
-        LayoutInflater inflater = getLayoutInflater();
-
-
-        TextView calendarWeek = (TextView) ((ViewGroup) row.getChildAt(0)).getChildAt(0);
-        calendarWeek.setText(String.valueOf(calendar.get(Calendar.WEEK_OF_YEAR)));
-
-        for (int childNo = 1; childNo < row.getChildCount(); ++childNo) {
-            // This view group is the container of the cell that holds the day events and the number of the day of the month.
-            final ViewGroup cellViewGroup = (ViewGroup) row.getChildAt(childNo);
-            if (cellViewGroup.getChildCount() > 2)
-                throw new IllegalStateException("cellViewGroup has more than 2 children");
-
-            // set day of month number
-            TextView textView = (TextView) cellViewGroup.getChildAt(0);
-            textView.setText(String.valueOf(calendar.get(Calendar.DAY_OF_MONTH)));
-            if (now.get(Calendar.YEAR) == year && now.get(Calendar.MONTH) == month && now.get(Calendar.DAY_OF_MONTH) == calendar.get(Calendar.DAY_OF_MONTH)) {
-                textView.setTextAppearance(this, R.style.EventEntry_DayNumber);
-                //textView.setBackgroundColor(0xffB82500);
-                textView.setBackground(getResources().getDrawable(R.drawable.daynumber_now));
-                textView.setTextColor(0xffffffff);
-            } else if (calendar.get(Calendar.MONTH) != month) {
-                textView.setTextAppearance(this, R.style.EventEntry_DayNumber_LastNextMonth);
-                //textView.setBackgroundColor(0xFFCAE4F2);
-                textView.setBackground(getResources().getDrawable(R.drawable.daynumber_lastnextweek));
-                textView.setTextColor(0xff000000);
-            } else if (calendar.get(Calendar.DAY_OF_WEEK) == Calendar.SATURDAY || calendar.get(Calendar.DAY_OF_WEEK) == Calendar.SUNDAY) {
-                textView.setTextAppearance(this, R.style.EventEntry_DayNumber);
-                //textView.setBackgroundColor(0xff00007A);
-                textView.setBackground(getResources().getDrawable(R.drawable.daynumber_weekend));
-                textView.setTextColor(0xffffffff);
-            } else {
-                textView.setTextAppearance(this, R.style.EventEntry_DayNumber);
-                //textView.setBackgroundColor(0xff4fa5d5);
-                textView.setBackground(getResources().getDrawable(R.drawable.daynumber));
-                textView.setTextColor(0xff000000);
+     * Indexes the months around the displayed month in the background; the results are updated after each month.
+     */
+    private void startSearchFill() {
+        if (searchFillTask != null) {
+            searchFillTask.cancel(false);
+        }
+        final Context context = getApplicationContext();
+        final int fillMonth = month;
+        final int fillYear = year;
+        final int radius = getResources().getInteger(R.integer.search_window_months);
+        searchFillTask = new AsyncTask<Void, Void, Void>() {
+            @Override
+            protected Void doInBackground(Void... params) {
+                SearchIndex.getInstance(context).fill(context, fillMonth, fillYear, radius,
+                        new SearchIndex.OnMonthIndexedListener() {
+                            @Override
+                            public boolean onMonthIndexed() {
+                                publishProgress();
+                                return !isCancelled();
+                            }
+                        });
+                return null;
             }
 
-            textView.setOnClickListener(new View.OnClickListener() {
-                @Override
-                public void onClick(View view) {
-                    dayClick(cellViewGroup);
+            @Override
+            protected void onProgressUpdate(Void... values) {
+                if (searchPanel.getVisibility() == View.VISIBLE) {
+                    runSearch();
                 }
-            });
+            }
+        };
+        // parallel to the serial tasks (e. g. the snapshot of the month)
+        searchFillTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+    }
 
+    /**
+     * Jumps to the month of a search result and opens its day.
+     */
+    private void openSearchResult(SearchIndex.Result result) {
+        Calendar day = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        day.setTimeInMillis(result.getDay() * CalendarMath.DAY_IN_MILLIS);
+        hideSearch();
+        setMonthAndYear(day.get(Calendar.MONTH), day.get(Calendar.YEAR));
+        dayClick(day);
+    }
 
-            // add events of day
+    /**
+     * Reads the calendars in the background and shows the calendar picker.
+     */
+    private void showCalendarPicker() {
+        new AsyncTask<Void, Void, CalendarFilter.CalendarList>() {
+            @Override
+            protected CalendarFilter.CalendarList doInBackground(Void... params) {
+                return CalendarFilter.getInstance(CalendarView.this).getCalendars();
+            }
 
-            // if there is a view group for the events: reuse it
-            ViewGroup eventsViewGroup;
-            if (cellViewGroup.getChildCount() == 2) {
-                eventsViewGroup = (ViewGroup) ((ViewGroup) cellViewGroup.getChildAt(1)).getChildAt(0);
-            } else {
-                ViewGroup vg = new ScrollView(this);
-                cellViewGroup.addView(vg);
-                eventsViewGroup = new LinearLayout(this);
-                ((LinearLayout) eventsViewGroup).setOrientation(LinearLayout.VERTICAL);
-                vg.addView(eventsViewGroup);
+            @Override
+            protected void onPostExecute(CalendarFilter.CalendarList calendars) {
+                if (!isFinishing()) {
+                    showCalendarPicker(calendars);
+                }
             }
+        }.execute();
+    }
 
-            eventsViewGroup.removeAllViews();
-
-            calendar.set(Calendar.HOUR_OF_DAY, 0);
-            calendar.set(Calendar.MINUTE, 0);
-            calendar.set(Calendar.SECOND, 0);
-            calendar.set(Calendar.MILLISECOND, 0);
-            // add one millisecond: don't show events ending at midnight
-            long startOfDay = calendar.getTimeInMillis() + 1;
-            calendar.set(Calendar.HOUR_OF_DAY, calendar.getActualMaximum(Calendar.HOUR_OF_DAY));
-            calendar.set(Calendar.MINUTE, calendar.getActualMaximum(Calendar.MINUTE));
-            calendar.set(Calendar.SECOND, calendar.getActualMaximum(Calendar.SECOND));
-            calendar.set(Calendar.MILLISECOND, calendar.getActualMaximum(Calendar.MILLISECOND));
-            // set end timestamp to 00:00:00
-            long endOfDay = calendar.getTimeInMillis();
-
-            int eventsToday = 0;
-
-            //System.out.println("cursor count " + cursor.getCount());
-            //System.out.println("cursor position 1: " + cursor.getPosition());
-
-            cursor.moveToPosition(-1);
-            while (cursor.moveToNext()) {
-                //System.out.println("cursor position 2: " + cursor.getPosition());
-                long dtstart = cursor.getLong(2);
-                long dtend = cursor.getLong(3);
-
-                if (dtstart <= endOfDay && dtend >= startOfDay) {
-                    String title = cursor.getString(1);
-                    boolean isAllDay = cursor.getInt(4) == 1;
-                    int displayColor = cursor.getInt(6);
-
-                    if (isAllDay) {
-                        textView = (TextView) inflater.inflate(R.layout.event_all_day, null);
-                    } else {
-                        textView = (TextView) inflater.inflate(R.layout.event, null);
-                    }
+    /**
+     * Shows the calendars of the provider; the events of the checked calendars are shown.
+     *
+     * @param calendars The calendars of the provider.
+     */
+    private void showCalendarPicker(final CalendarFilter.CalendarList calendars) {
+        final CalendarFilter calendarFilter = CalendarFilter.getInstance(this);
+        AlertDialog.Builder builder = new AlertDialog.Builder(this).setTitle(R.string.calendars);
+        if (calendars.size() == 0) {
+            builder.setMessage(R.string.no_calendars).setPositiveButton(android.R.string.ok, null).show();
+            return;
+        }
 
-                    textView.setText(title);
-                    textView.setTextColor(displayColor);
-                    textView.setOnClickListener(new View.OnClickListener() {
-                        @Override
-                        public void onClick(View view) {
-                            dayClick(cellViewGroup);
+        String[] names = new String[calendars.size()];
+        final boolean[] checked = new boolean[calendars.size()];
+        for (int i = 0; i < calendars.size(); ++i) {
+            String name = calendars.getName(i);
+            String account = calendars.getAccount(i);
+            // the primary calendar of an account is usually named like the account
+            names[i] = account == null || account.equals(name) ? name : name + " (" + account + ")";
+            checked[i] = calendarFilter.isChosen(calendars.getId(i));
+        }
+        builder.setMultiChoiceItems(names, checked, new DialogInterface.OnMultiChoiceClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which, boolean isChecked) {
+                checked[which] = isChecked;
+                // without any calendar there would be nothing to show
+                ((AlertDialog) dialog).getButton(DialogInterface.BUTTON_POSITIVE).setEnabled(getCount(checked) > 0);
+            }
+        }).setNegativeButton(android.R.string.cancel, null)
+                .setPositiveButton(android.R.string.ok, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        int count = getCount(checked);
+                        // all calendars: no filter, so new calendars are shown as well
+                        long[] calendarIds = null;
+                        if (count < checked.length) {
+                            calendarIds = new long[count];
+                            for (int i = 0, j = 0; i < checked.length; ++i) {
+                                if (checked[i])
+                                    calendarIds[j++] = calendars.getId(i);
+                            }
                         }
-                    });
-                    eventsViewGroup.addView(textView);
-                    ++eventsToday;
+                        calendarFilter.setChosen(calendarIds);
+                        // the cached months were loaded with the other calendars
+                        clearCaches();
+                        update();
+                    }
+                });
+        // the chosen calendars may have been removed from the provider
+        builder.show().getButton(DialogInterface.BUTTON_POSITIVE).setEnabled(getCount(checked) > 0);
+    }
+
+    /**
+     * Clears all caches of the loaded months: the months, their instances, the instance files and the search index.
+     */
+    private void clearCaches() {
+        MonthCache.getInstance(this).evictAll();
+        EventRepository.getInstance(this).evictAll();
+        InstanceDiskCache.getInstance(this).evictAll();
+        SearchIndex.getInstance(this).evictAll();
+    }
+
+    /**
+     * @return The number of checked items.
+     */
+    private static int getCount(boolean[] checked) {
+        int count = 0;
+        for (boolean isChecked : checked) {
+            if (isChecked)
+                ++count;
+        }
+        return count;
+    }
+
+    /**
+     * Shows the {@link StageTimer} report and writes it into a file.
+     */
+    private void showTimingReport() {
+        if (timingOverlay == null)
+            timingOverlay = (TextView) findViewById(R.id.timing_overlay);
+        timingOverlay.setText(StageTimer.getReport());
+        timingOverlay.setVisibility(View.VISIBLE);
+        try {
+            File file = StageTimer.dump(this);
+            Toast.makeText(this, file.getAbsolutePath(), Toast.LENGTH_LONG).show();
+        } catch (IOException e) {
+            Toast.makeText(this, e.getMessage(), Toast.LENGTH_LONG).show();
+        }
+    }
+
+    /**
+     * Writes the month into the {@link MonthSnapshot} in the background if it is the current month (the month of the
+     * next cold start).
+     *
+     * @param model A loaded month.
+     */
+    private void writeSnapshot(final MonthModel model) {
+        if (model == snapshotModel || model.getMonth() != now.get(Calendar.MONTH) || model.getYear() != now.get(Calendar.YEAR))
+            return;
+        snapshotModel = model;
+        final Context context = getApplicationContext();
+        AsyncTask.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    MonthSnapshot.write(context, model);
+                } catch (IOException e) {
+                    Log.w("CalendarView", "Cannot write the month snapshot", e);
                 }
             }
+        });
+    }
 
-            maxNoEvents = Math.max(maxNoEvents, eventsToday);
+    /**
+     * @param calendar A date.
+     * @return A number that identifies the day of the date.
+     */
+    private static int getDayStamp(Calendar calendar) {
+        return calendar.get(Calendar.YEAR) * 1000 + calendar.get(Calendar.DAY_OF_YEAR);
+    }
+
+    /**
+     * Loads the previous and the next month into the {@link MonthCache} (if they are not already cached), so that
+     * swiping to them renders instantly.
+     */
+    private void prefetchNeighbors() {
+        MonthCache monthCache = MonthCache.getInstance(this);
+
+        int previousMonth = month == 0 ? 11 : month - 1;
+        int previousYear = month == 0 ? year - 1 : year;
+        if (monthCache.get(previousMonth, previousYear) == null) {
+            Bundle bundle = new Bundle();
+            bundle.putInt(MONTH_KEY, previousMonth);
+            bundle.putInt(YEAR_KEY, previousYear);
+            getLoaderManager().restartLoader(PREVIOUS_MONTH_LOADER_ID, bundle, this);
+        }
 
-            calendar.add(Calendar.DAY_OF_MONTH, 1);
+        int nextMonth = month == 11 ? 0 : month + 1;
+        int nextYear = month == 11 ? year + 1 : year;
+        if (monthCache.get(nextMonth, nextYear) == null) {
+            Bundle bundle = new Bundle();
+            bundle.putInt(MONTH_KEY, nextMonth);
+            bundle.putInt(YEAR_KEY, nextYear);
+            getLoaderManager().restartLoader(NEXT_MONTH_LOADER_ID, bundle, this);
         }
     }
 
@@ -539,66 +842,43 @@ public class CalendarView extends ActionBarActivity implements LoaderManager.Loa
         newFragment.show(getFragmentManager(), "year_picker");
     }
 
-    public void dayClick(View view) {
-        Intent intent = new Intent(this, EventsView.class);
-
-        Calendar calendar = Calendar.getInstance();
-
-        // view is the ViewGroup (LinearLayout) that holds all views of the day (day number and events)
-        ViewGroup viewGroup = (ViewGroup) view;
-        // TextView that holds the day
-        TextView textView = (TextView) viewGroup.getChildAt(0);
-
-        int day = Integer.parseInt(textView.getText().toString());
-        int month = this.month;
-        int year = this.year;
-
-        View currentRow = ((View) view.getParent());
-        int firstRowId = R.id.row_1;
-        int lastRowId = R.id.row_6;
-        if (((ViewGroup) currentRow.getParent()).findViewById(lastRowId).getVisibility() == View.GONE) {
-            lastRowId = R.id.row_5;
-            if (((ViewGroup) currentRow.getParent()).findViewById(lastRowId).getVisibility() == View.GONE) {
-                lastRowId = R.id.row_4;
-            }
-        }
+    /**
+     * Opens the year overview.
+     *
+     * @param year The year to show.
+     */
+    public void showYearOverview(int year) {
+        Intent intent = new Intent(this, YearView.class);
+        intent.putExtra(YearView.EXTRA_YEAR, year);
+        startActivityForResult(intent, YEAR_OVERVIEW_REQUEST);
+    }
 
-        if (currentRow.getId() == firstRowId) {
-            // this is the first week
-            // maybe last month?
-            if (day > 7) {
-                System.out.println("last next");
-                if (month == calendar.getMinimum(Calendar.MONTH)) {
-                    month = calendar.getMaximum(Calendar.MONTH);
-                    --year;
-                } else {
-                    --month;
-                }
-            }
-        } else if (currentRow.getId() == lastRowId) {
-            // this is the last week
-            // maybe next month?
-            if (day < 7) {
-                System.out.println("last next");
-                if (month == calendar.getMaximum(Calendar.MONTH)) {
-                    month = calendar.getMaximum(Calendar.MONTH);
-                    ++year;
-                } else {
-                    ++month;
-                }
-            }
+    @Override
+    protected void onActivityResult(int requestCode, int resultCode, Intent data) {
+        super.onActivityResult(requestCode, resultCode, data);
+        // a month has been tapped in the year overview
+        if (requestCode == YEAR_OVERVIEW_REQUEST && resultCode == RESULT_OK) {
+            setMonthAndYear(data.getIntExtra(YearView.EXTRA_MONTH, month), data.getIntExtra(YearView.EXTRA_YEAR, year));
         }
+    }
 
-        calendar.set(year, month, day);
-        intent.putExtra("calendar", calendar);
-
-        startActivity(intent);
+    /**
+     * Opens the events of a day (package-private for the tests).
+     *
+     * @param day The day (00:00 UTC).
+     */
+    void dayClick(Calendar day) {
+        startActivity(EventsView.newIntent(this, day));
     }
 
     @Override
-    public boolean onTouchEvent(MotionEvent event) {
-        this.gestureDetectorCompat.onTouchEvent(event);
-        return super.onTouchEvent(event);
+    public boolean dispatchTouchEvent(MotionEvent event) {
+        // the month grid consumes the touch events for the day clicks, so the swipes are detected before; the search
+        // panel covers the grid and its list scrolls, so there are no swipes while it is shown
+        if (searchPanel == null || searchPanel.getVisibility() != View.VISIBLE) {
+            this.gestureDetectorCompat.onTouchEvent(event);
+        }
+        return super.dispatchTouchEvent(event);
     }
 
 
@@ -606,16 +886,16 @@ public class CalendarView extends ActionBarActivity implements LoaderManager.Loa
 
 
     /**
-     * user has swiped right
+     * user has swiped right (package-private for the tests)
      */
-    private void onSwipeRight() {
+    void onSwipeRight() {
         decreaseMonth();
     }
 
     /**
-     * user has swiped left
+     * user has swiped left (package-private for the tests)
      */
-    private void onSwipeLeft() {
+    void onSwipeLeft() {
         increaseMonth();
     }
 
@@ -635,68 +915,47 @@ public class CalendarView extends ActionBarActivity implements LoaderManager.Loa
     // LOADER MANAGER HANDLER
 
     @Override
-    public Loader<Cursor> onCreateLoader(int loaderId, Bundle bundle) {
+    public Loader<MonthModel> onCreateLoader(int loaderId, Bundle bundle) {
         // System.out.println("CREATE LOADER");
         switch (loaderId) {
             case EVENTS_LOADER_ID:
                 findViewById(R.id.progressBar).setVisibility(View.VISIBLE);
                 //ProgressBar progressBar = (ProgressBar) findViewById(R.id.progressBar);
 
-                removeAllEvents(R.id.row_1);
-                removeAllEvents(R.id.row_2);
-                removeAllEvents(R.id.row_3);
-                removeAllEvents(R.id.row_4);
-                removeAllEvents(R.id.row_5);
-                removeAllEvents(R.id.row_6);
-
-                Uri.Builder builder = CalendarContract.Instances.CONTENT_URI.buildUpon();
-                ContentUris.appendId(builder, bundle.getLong(START_TS));
-                ContentUris.appendId(builder, bundle.getLong(END_TS));
-                return new CursorLoader(this, builder.build(), EVENTS_PROJECTION, EVENTS_SELECTION, null, CalendarContract.Instances.BEGIN + " ASC");
+                // the grid keeps the days of the month (see update())
+                return new MonthLoader(this, bundle.getInt(MONTH_KEY), bundle.getInt(YEAR_KEY));
+            case PREVIOUS_MONTH_LOADER_ID:
+            case NEXT_MONTH_LOADER_ID:
+                // the loader puts the month into the cache
+                return new MonthLoader(this, bundle.getInt(MONTH_KEY), bundle.getInt(YEAR_KEY));
         }
         return null;
     }
 
     @Override
-    public void onLoadFinished(Loader<Cursor> loader, Cursor cursor) {
+    public void onLoadFinished(Loader<MonthModel> loader, MonthModel model) {
 
         //System.out.println("LOAD FINISH");
 
         switch (loader.getId()) {
 
             case EVENTS_LOADER_ID:
-                Calendar calendar = CalendarLabels.getFirstDayOfMonth(month, year);
-
-
-                updateRow(R.id.row_1, calendar, cursor);
-                updateRow(R.id.row_2, calendar, cursor);
-                updateRow(R.id.row_3, calendar, cursor);
-                updateRow(R.id.row_4, calendar, cursor);
-                if (calendar.get(Calendar.MONTH) != month) {
-                    findViewById(R.id.row_5).setVisibility(View.GONE);
-                } else {
-                    findViewById(R.id.row_5).setVisibility(View.VISIBLE);
-                    updateRow(R.id.row_5, calendar, cursor);
-                }
-                if (calendar.get(Calendar.MONTH) != month) {
-                    findViewById(R.id.row_6).setVisibility(View.GONE);
-                } else {
-                    findViewById(R.id.row_6).setVisibility(View.VISIBLE);
-                    updateRow(R.id.row_6, calendar, cursor);
-                }
-
-                setDummyEvents(R.id.row_1);
-                setDummyEvents(R.id.row_2);
-                setDummyEvents(R.id.row_3);
-                setDummyEvents(R.id.row_4);
-                setDummyEvents(R.id.row_5);
-                setDummyEvents(R.id.row_6);
+                // a month the user has already left, the load of the current month is pending
+                if (model.getMonth() != month || model.getYear() != year)
+                    return;
+                StageTimer.record(StageTimer.STAGE_SWITCH, System.nanoTime() - requestedTime);
+                monthGrid.setModel(model);
                 findViewById(R.id.progressBar).setVisibility(View.INVISIBLE);
+                if (timingOverlay != null && timingOverlay.getVisibility() == View.VISIBLE)
+                    timingOverlay.setText(StageTimer.getReport());
+
+                prefetchNeighbors();
+                writeSnapshot(model);
         }
     }
 
     @Override
-    public void onLoaderReset(Loader<Cursor> loader) {
+    public void onLoaderReset(Loader<MonthModel> loader) {
         //System.out.println("RESET LOADER");
         switch (loader.getId()) {
 
@@ -704,12 +963,7 @@ public class CalendarView extends ActionBarActivity implements LoaderManager.Loa
                 findViewById(R.id.progressBar).setVisibility(View.VISIBLE);
                 //ProgressBar progressBar = (ProgressBar) findViewById(R.id.progressBar);
 
-                removeAllEvents(R.id.row_1);
-                removeAllEvents(R.id.row_2);
-                removeAllEvents(R.id.row_3);
-                removeAllEvents(R.id.row_4);
-                removeAllEvents(R.id.row_5);
-                removeAllEvents(R.id.row_6);
+                monthGrid.setModel(null);
         }
     }
 
@@ -756,6 +1010,13 @@ public class CalendarView extends ActionBarActivity implements LoaderManager.Loa
                                 }
                             }
                     )
+                    .setNeutralButton(R.string.year_overview, new DialogInterface.OnClickListener() {
+                                @Override
+                                public void onClick(DialogInterface dialogInterface, int id) {
+                                    ((CalendarView) getActivity()).showYearOverview(picker.getValue());
+                                }
+                            }
+                    )
                     .setNegativeButton(android.R.string.cancel, new DialogInterface.OnClickListener() {
                                 @Override
                                 public void onClick(DialogInterface dialogInterface, int i) {
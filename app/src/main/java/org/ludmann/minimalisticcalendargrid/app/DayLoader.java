@@ -0,0 +1,175 @@
+package org.ludmann.minimalisticcalendargrid.app;
+
+import android.content.AsyncTaskLoader;
+import android.content.ContentUris;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.CalendarContract;
+
+import org.ludmann.minimalisticcalendargrid.core.CalendarMath;
+
+import java.text.DateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Loads the events of a day and formats their texts in the background.
+ * <p/>
+ * The events are taken from the {@link EventRepository} if a loaded month covers the day. Otherwise only the day is
+ * queried.
+ * <p/>
+ * The date formats are created once and reused for all events and loads; they are only recreated if the locale or the
+ * time zone changes.
+ *
+ * @author Cornelius Ludmann
+ */
+public class DayLoader extends AsyncTaskLoader<DayModel> {
+
+    private final int day;
+    private final int month;
+    private final int year;
+    private DayModel model;
+
+    private Locale formatLocale;
+    private TimeZone formatTimeZone;
+    private DateFormat dateFormat;
+    private DateFormat timeFormat;
+    private DateFormat dateTimeFormat;
+    private final Date date = new Date();
+
+    public DayLoader(Context context, int day, int month, int year) {
+        super(context);
+        this.day = day;
+        this.month = month;
+        this.year = year;
+    }
+
+    @Override
+    public DayModel loadInBackground() {
+        // the displayed month has usually loaded the day already
+        EventStore events = EventRepository.getInstance(getContext()).getDay(year, month, day);
+        if (events != null) {
+            return buildModel(events);
+        }
+
+        // due to the timestamp in the database are UTC: the day is a UTC day
+        long startOfDay = CalendarMath.toEpochDay(year, month, day) * CalendarMath.DAY_IN_MILLIS;
+        long endOfDay = startOfDay + CalendarMath.DAY_IN_MILLIS - 1;
+
+        Uri.Builder builder = InstanceSource.getInstance(getContext()).getInstancesUri().buildUpon();
+        // add one millisecond: don't show events ending at midnight
+        ContentUris.appendId(builder, startOfDay + 1);
+        ContentUris.appendId(builder, endOfDay);
+        String[] selectionArgs = CalendarFilter.getInstance(getContext()).getSelectionArgs();
+        Cursor cursor = getContext().getContentResolver().query(builder.build(), EventStore.PROJECTION,
+                CalendarFilter.getSelection(selectionArgs), selectionArgs, CalendarContract.Instances.BEGIN + " ASC");
+        try {
+            return buildModel(EventStore.fromCursor(cursor));
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+
+    /**
+     * Formats the texts of all events.
+     *
+     * @param events The events of the day.
+     * @return The model of the day.
+     */
+    private synchronized DayModel buildModel(EventStore events) {
+        TimeZone timeZone = TimeZone.getDefault();
+        updateFormats(timeZone);
+
+        // the bounds of the day in local time
+        long epochDay = CalendarMath.toEpochDay(year, month, day);
+        long startOfDay = CalendarMath.getStartOfDay(epochDay, timeZone);
+        long endOfDay = CalendarMath.getStartOfDay(epochDay + 1, timeZone);
+        String extraInfoPrefix = getContext().getString(R.string.calendar_display_name) + ": ";
+
+        int size = events.size();
+        String[] timeTexts = new String[size];
+        String[] locations = new String[size];
+        String[] extraInfos = new String[size];
+        for (int position = 0; position < size; ++position) {
+            long start = events.getBegin(position);
+            long end = events.getEnd(position);
+            if (events.isAllDay(position)) {
+                // all-day events are stored at 00:00 UTC: move them to 00:00 local time
+                start -= timeZone.getOffset(start);
+                end -= timeZone.getOffset(end);
+            }
+            boolean onlyThisDay = start >= startOfDay && end <= endOfDay;
+
+            if (events.isAllDay(position)) {
+                // because all day events end at 00:00 of the next day, the last day ends one millisecond before
+                timeTexts[position] = onlyThisDay ? null : formatRange(dateFormat, start, end - 1);
+            } else {
+                timeTexts[position] = formatRange(onlyThisDay ? timeFormat : dateTimeFormat, start, end);
+            }
+
+            String location = events.getLocation(position);
+            locations[position] = location == null || location.trim().length() == 0 ? null : location;
+            extraInfos[position] = extraInfoPrefix + events.getCalendarName(position);
+        }
+
+        return new DayModel(events, timeTexts, locations, extraInfos);
+    }
+
+    /**
+     * (Re)creates the date formats if they are not created yet or the locale or time zone has changed.
+     */
+    private void updateFormats(TimeZone timeZone) {
+        Locale locale = Locale.getDefault();
+        if (locale.equals(formatLocale) && timeZone.equals(formatTimeZone))
+            return;
+        dateFormat = DateFormat.getDateInstance();
+        timeFormat = DateFormat.getTimeInstance(DateFormat.SHORT);
+        dateTimeFormat = DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT);
+        formatLocale = locale;
+        formatTimeZone = timeZone;
+    }
+
+    private String formatRange(DateFormat format, long start, long end) {
+        date.setTime(start);
+        String startText = format.format(date);
+        date.setTime(end);
+        return startText + " – " + format.format(date);
+    }
+
+    @Override
+    public void deliverResult(DayModel model) {
+        if (isReset()) {
+            return;
+        }
+        this.model = model;
+        if (isStarted()) {
+            super.deliverResult(model);
+        }
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (model != null) {
+            deliverResult(model);
+        }
+        if (takeContentChanged() || model == null) {
+            forceLoad();
+        }
+    }
+
+    @Override
+    protected void onStopLoading() {
+        cancelLoad();
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        onStopLoading();
+        model = null;
+    }
+}
@@ -0,0 +1,55 @@
+package org.ludmann.minimalisticcalendargrid.app;
+
+/**
+ * Immutable, ready-to-bind content of the event list of a day.
+ * <p/>
+ * The texts of each event are formatted in the background by {@link DayLoader}, so binding a row only sets prepared
+ * strings.
+ *
+ * @author Cornelius Ludmann
+ */
+public class DayModel {
+
+    private final EventStore events;
+    private final String[] timeTexts;
+    private final String[] locations;
+    private final String[] extraInfos;
+
+    DayModel(EventStore events, String[] timeTexts, String[] locations, String[] extraInfos) {
+        this.events = events;
+        this.timeTexts = timeTexts;
+        this.locations = locations;
+        this.extraInfos = extraInfos;
+    }
+
+    /**
+     * @return The events of the day. The position in the list is the index in the store.
+     */
+    public EventStore getEvents() {
+        return events;
+    }
+
+    /**
+     * @param position The index of the event.
+     * @return The time range or null if there is no time to show (all-day event of only this day).
+     */
+    public String getTimeText(int position) {
+        return timeTexts[position];
+    }
+
+    /**
+     * @param position The index of the event.
+     * @return The location or null if the event has no location.
+     */
+    public String getLocation(int position) {
+        return locations[position];
+    }
+
+    /**
+     * @param position The index of the event.
+     * @return The additional information (calendar name).
+     */
+    public String getExtraInfo(int position) {
+        return extraInfos[position];
+    }
+}
@@ -0,0 +1,113 @@
+package org.ludmann.minimalisticcalendargrid.app;
+
+import android.content.Context;
+import android.util.LruCache;
+
+import org.ludmann.minimalisticcalendargrid.core.CalendarMath;
+import org.ludmann.minimalisticcalendargrid.core.DayBuckets;
+
+import java.util.Map;
+
+/**
+ * Process wide store of the loaded instances, shared by the month grid and the day view.
+ * <p/>
+ * Each loaded month keeps its {@link EventStore} (with all columns of {@link EventStore#PROJECTION}) and the
+ * assignment of the instances to the days. A day that is covered by a loaded month is served from memory, so opening a
+ * day of the displayed month needs no query. Like the {@link MonthCache}, the months are only valid as long as the
+ * {@link CalendarObserver} generation has not changed.
+ *
+ * @author Cornelius Ludmann
+ */
+public class EventRepository {
+
+    private static EventRepository instance;
+
+    private final LruCache<Integer, Range> ranges;
+    private final CalendarObserver calendarObserver;
+
+    private EventRepository(int maxMonths, CalendarObserver calendarObserver) {
+        this.ranges = new LruCache<Integer, Range>(maxMonths);
+        this.calendarObserver = calendarObserver;
+    }
+
+    /**
+     * @param context A context to read the cache size.
+     * @return The process wide repository.
+     */
+    public static synchronized EventRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new EventRepository(context.getResources().getInteger(R.integer.month_cache_size),
+                    CalendarObserver.getInstance(context));
+        }
+        return instance;
+    }
+
+    /**
+     * Adds the instances of a loaded month.
+     *
+     * @param geometry   The geometry of the month.
+     * @param generation The {@link CalendarObserver} generation before the query.
+     * @param events     The instances of the visible rows of the grid.
+     * @param buckets    The assignment of the instances to the cells.
+     */
+    public void put(GridGeometry geometry, int generation, EventStore events, DayBuckets buckets) {
+        if (generation == calendarObserver.getGeneration()) {
+            ranges.put(geometry.getYear() * 12 + geometry.getMonth(), new Range(geometry, generation, events, buckets));
+        }
+    }
+
+    /**
+     * @param year       The year.
+     * @param month      The month (0 - 11).
+     * @param dayOfMonth The day of the month.
+     * @return The instances of the (UTC) day or null if no loaded month covers the day.
+     */
+    public EventStore getDay(int year, int month, int dayOfMonth) {
+        long day = CalendarMath.toEpochDay(year, month, dayOfMonth);
+        int generation = calendarObserver.getGeneration();
+
+        // usually the month of the day covers it, but the neighbor months cover the first and last days, too
+        Range range = ranges.get(year * 12 + month);
+        if (range == null || !range.covers(day, generation)) {
+            range = null;
+            for (Map.Entry<Integer, Range> entry : ranges.snapshot().entrySet()) {
+                if (entry.getValue().covers(day, generation)) {
+                    range = entry.getValue();
+                    break;
+                }
+            }
+        }
+        if (range == null)
+            return null;
+        return range.events.select(range.buckets, (int) (day - range.geometry.getFirstDay()));
+    }
+
+    /**
+     * Removes all months, e. g. because a reload is forced.
+     */
+    public void evictAll() {
+        ranges.evictAll();
+    }
+
+    /**
+     * The instances of the visible rows of a month grid.
+     */
+    private static final class Range {
+        private final GridGeometry geometry;
+        private final int generation;
+        private final EventStore events;
+        private final DayBuckets buckets;
+
+        private Range(GridGeometry geometry, int generation, EventStore events, DayBuckets buckets) {
+            this.geometry = geometry;
+            this.generation = generation;
+            this.events = events;
+            this.buckets = buckets;
+        }
+
+        private boolean covers(long day, int currentGeneration) {
+            return generation == currentGeneration && day >= geometry.getFirstDay()
+                    && day < geometry.getFirstDay() + geometry.getRowCount() * MonthModel.DAYS_PER_WEEK;
+        }
+    }
+}
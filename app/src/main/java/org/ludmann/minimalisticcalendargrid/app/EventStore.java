@@ -0,0 +1,356 @@
+package org.ludmann.minimalisticcalendargrid.app;
+
+import android.database.Cursor;
+import android.provider.CalendarContract;
+
+import org.ludmann.minimalisticcalendargrid.core.DayBuckets;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact, column oriented store of the instances of one load.
+ * <p/>
+ * The store is filled once from the cursor. Each field is kept in a primitive array (one entry per instance), the
+ * boolean fields are packed into one flags array and the strings are interned in a table, so recurring events share
+ * their title. Columns that are not part of the projection get default values (0, false or null). All queries
+ * select visible instances only, so the VISIBLE column is not queried.
+ * <p/>
+ * For the {@link InstanceDiskCache} a store can be written into a buffer as fixed-width records (one per instance)
+ * followed by the string table.
+ *
+ * @author Cornelius Ludmann
+ */
+public class EventStore {
+
+    /**
+     * All instance fields the app uses (month grid and day view).
+     */
+    public static final String[] PROJECTION = new String[]{
+            CalendarContract.Instances.EVENT_ID,
+            CalendarContract.Instances.TITLE,
+            CalendarContract.Instances.EVENT_LOCATION,
+            CalendarContract.Instances.BEGIN,
+            CalendarContract.Instances.END,
+            CalendarContract.Instances.ALL_DAY,
+            CalendarContract.Instances.DISPLAY_COLOR,
+            CalendarContract.Instances.CALENDAR_DISPLAY_NAME,
+            CalendarContract.Instances.HAS_ALARM
+    };
+
+    /**
+     * The instance fields the month grid draws, for {@link CalendarContract.Instances#CONTENT_BY_DAY_URI} and the pages
+     * of the {@link WeeksView}. The cells are assigned by begin and end like with {@link #PROJECTION}: the Julian days
+     * of the provider are days of the local time zone, but the days of the grid are UTC days.
+     */
+    public static final String[] GRID_PROJECTION = new String[]{
+            CalendarContract.Instances.TITLE,
+            CalendarContract.Instances.BEGIN,
+            CalendarContract.Instances.END,
+            CalendarContract.Instances.ALL_DAY,
+            CalendarContract.Instances.DISPLAY_COLOR
+    };
+
+    /**
+     * Bytes per instance: event id, begin, end, color, title, location, calendar name, flags.
+     */
+    static final int RECORD_SIZE = 8 + 8 + 8 + 4 + 4 + 4 + 4 + 1;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int FLAG_ALL_DAY = 1;
+    private static final int FLAG_HAS_ALARM = 1 << 1;
+
+    private final int size;
+    private final long[] eventIds;
+    private final long[] begin;
+    private final long[] end;
+    private final int[] color;
+    private final byte[] flags;
+    private final int[] title;
+    private final int[] location;
+    private final int[] calendarName;
+    /**
+     * Interned strings. Index 0 is null.
+     */
+    private final String[] strings;
+
+    private EventStore(int size, long[] eventIds, long[] begin, long[] end, int[] color, byte[] flags, int[] title,
+                       int[] location, int[] calendarName, String[] strings) {
+        this.size = size;
+        this.eventIds = eventIds;
+        this.begin = begin;
+        this.end = end;
+        this.color = color;
+        this.flags = flags;
+        this.title = title;
+        this.location = location;
+        this.calendarName = calendarName;
+        this.strings = strings;
+    }
+
+    /**
+     * Copies all rows of the cursor into a new store. The order of the cursor is kept.
+     *
+     * @param cursor The cursor with columns of {@link CalendarContract.Instances} (may be null).
+     * @return The store.
+     */
+    public static EventStore fromCursor(Cursor cursor) {
+        int size = cursor == null ? 0 : cursor.getCount();
+        long[] eventIds = new long[size];
+        long[] begin = new long[size];
+        long[] end = new long[size];
+        int[] color = new int[size];
+        byte[] flags = new byte[size];
+        int[] title = new int[size];
+        int[] location = new int[size];
+        int[] calendarName = new int[size];
+
+        List<String> strings = new ArrayList<String>();
+        Map<String, Integer> stringIndex = new HashMap<String, Integer>();
+        strings.add(null);
+
+        if (cursor != null) {
+            int eventIdColumn = cursor.getColumnIndex(CalendarContract.Instances.EVENT_ID);
+            int titleColumn = cursor.getColumnIndex(CalendarContract.Instances.TITLE);
+            int locationColumn = cursor.getColumnIndex(CalendarContract.Instances.EVENT_LOCATION);
+            int beginColumn = cursor.getColumnIndex(CalendarContract.Instances.BEGIN);
+            int endColumn = cursor.getColumnIndex(CalendarContract.Instances.END);
+            int allDayColumn = cursor.getColumnIndex(CalendarContract.Instances.ALL_DAY);
+            int colorColumn = cursor.getColumnIndex(CalendarContract.Instances.DISPLAY_COLOR);
+            int calendarNameColumn = cursor.getColumnIndex(CalendarContract.Instances.CALENDAR_DISPLAY_NAME);
+            int hasAlarmColumn = cursor.getColumnIndex(CalendarContract.Instances.HAS_ALARM);
+
+            cursor.moveToPosition(-1);
+            int i = 0;
+            while (cursor.moveToNext()) {
+                eventIds[i] = eventIdColumn < 0 ? 0 : cursor.getLong(eventIdColumn);
+                begin[i] = beginColumn < 0 ? 0 : cursor.getLong(beginColumn);
+                end[i] = endColumn < 0 ? 0 : cursor.getLong(endColumn);
+                color[i] = colorColumn < 0 ? 0 : cursor.getInt(colorColumn);
+
+                int f = 0;
+                if (allDayColumn >= 0 && cursor.getInt(allDayColumn) != 0)
+                    f |= FLAG_ALL_DAY;
+                if (hasAlarmColumn >= 0 && cursor.getInt(hasAlarmColumn) != 0)
+                    f |= FLAG_HAS_ALARM;
+                flags[i] = (byte) f;
+
+                title[i] = intern(titleColumn < 0 ? null : cursor.getString(titleColumn), strings, stringIndex);
+                location[i] = intern(locationColumn < 0 ? null : cursor.getString(locationColumn), strings, stringIndex);
+                calendarName[i] = intern(calendarNameColumn < 0 ? null : cursor.getString(calendarNameColumn), strings, stringIndex);
+                ++i;
+            }
+        }
+
+        return new EventStore(size, eventIds, begin, end, color, flags, title, location, calendarName,
+                strings.toArray(new String[strings.size()]));
+    }
+
+    private static int intern(String string, List<String> strings, Map<String, Integer> stringIndex) {
+        if (string == null)
+            return 0;
+        Integer index = stringIndex.get(string);
+        if (index == null) {
+            index = strings.size();
+            strings.add(string);
+            stringIndex.put(string, index);
+        }
+        return index;
+    }
+
+    /**
+     * @return The strings of the store in UTF-8 for {@link #writeTo(ByteBuffer, byte[][])}. Index 0 is null.
+     */
+    byte[][] encodeStrings() {
+        byte[][] encoded = new byte[strings.length][];
+        for (int i = 1; i < strings.length; ++i) {
+            encoded[i] = strings[i].getBytes(UTF_8);
+        }
+        return encoded;
+    }
+
+    /**
+     * @param encodedStrings The result of {@link #encodeStrings()}.
+     * @return The number of bytes {@link #writeTo(ByteBuffer, byte[][])} writes.
+     */
+    int getEncodedSize(byte[][] encodedStrings) {
+        int encodedSize = 4 + size * RECORD_SIZE + 4;
+        for (int i = 1; i < encodedStrings.length; ++i) {
+            encodedSize += 4 + encodedStrings[i].length;
+        }
+        return encodedSize;
+    }
+
+    /**
+     * Writes the number of instances, the records and the string table.
+     *
+     * @param buffer         The buffer (at least {@link #getEncodedSize(byte[][])} bytes remaining).
+     * @param encodedStrings The result of {@link #encodeStrings()}.
+     */
+    void writeTo(ByteBuffer buffer, byte[][] encodedStrings) {
+        buffer.putInt(size);
+        for (int i = 0; i < size; ++i) {
+            buffer.putLong(eventIds[i]);
+            buffer.putLong(begin[i]);
+            buffer.putLong(end[i]);
+            buffer.putInt(color[i]);
+            buffer.putInt(title[i]);
+            buffer.putInt(location[i]);
+            buffer.putInt(calendarName[i]);
+            buffer.put(flags[i]);
+        }
+        buffer.putInt(encodedStrings.length);
+        for (int i = 1; i < encodedStrings.length; ++i) {
+            buffer.putInt(encodedStrings[i].length);
+            buffer.put(encodedStrings[i]);
+        }
+    }
+
+    /**
+     * Reads a store written by {@link #writeTo(ByteBuffer, byte[][])}. Every count, length and string index is checked
+     * against the buffer before anything is allocated, so a corrupt file cannot cause a huge allocation.
+     *
+     * @param buffer The buffer, positioned at the start of the store.
+     * @return The store.
+     * @throws IllegalArgumentException If the store is corrupt.
+     * @throws java.nio.BufferUnderflowException If the store is truncated.
+     */
+    static EventStore readFrom(ByteBuffer buffer) {
+        int size = buffer.getInt();
+        if (size < 0 || size > buffer.remaining() / RECORD_SIZE)
+            throw new IllegalArgumentException("invalid instance count: " + size);
+        long[] eventIds = new long[size];
+        long[] begin = new long[size];
+        long[] end = new long[size];
+        int[] color = new int[size];
+        byte[] flags = new byte[size];
+        int[] title = new int[size];
+        int[] location = new int[size];
+        int[] calendarName = new int[size];
+        for (int i = 0; i < size; ++i) {
+            eventIds[i] = buffer.getLong();
+            begin[i] = buffer.getLong();
+            end[i] = buffer.getLong();
+            color[i] = buffer.getInt();
+            title[i] = buffer.getInt();
+            location[i] = buffer.getInt();
+            calendarName[i] = buffer.getInt();
+            flags[i] = buffer.get();
+        }
+        int stringCount = buffer.getInt();
+        // every string but null has at least its length
+        if (stringCount < 1 || stringCount - 1 > buffer.remaining() / 4)
+            throw new IllegalArgumentException("invalid string count: " + stringCount);
+        for (int i = 0; i < size; ++i) {
+            if (!isStringIndex(title[i], stringCount) || !isStringIndex(location[i], stringCount)
+                    || !isStringIndex(calendarName[i], stringCount))
+                throw new IllegalArgumentException("invalid string index of instance " + i);
+        }
+        String[] strings = new String[stringCount];
+        byte[] bytes = new byte[0];
+        for (int i = 1; i < strings.length; ++i) {
+            int length = buffer.getInt();
+            if (length < 0 || length > buffer.remaining())
+                throw new IllegalArgumentException("invalid string length: " + length);
+            if (bytes.length < length)
+                bytes = new byte[length];
+            buffer.get(bytes, 0, length);
+            strings[i] = new String(bytes, 0, length, UTF_8);
+        }
+        return new EventStore(size, eventIds, begin, end, color, flags, title, location, calendarName, strings);
+    }
+
+    private static boolean isStringIndex(int index, int stringCount) {
+        return index >= 0 && index < stringCount;
+    }
+
+    /**
+     * Copies the instances of one cell into a new store. The strings are shared.
+     *
+     * @param buckets The assignment of the instances of this store to the cells.
+     * @param cell    The cell.
+     * @return The store with the instances of the cell.
+     */
+    public EventStore select(DayBuckets buckets, int cell) {
+        int count = buckets.getCount(cell);
+        long[] eventIds = new long[count];
+        long[] begin = new long[count];
+        long[] end = new long[count];
+        int[] color = new int[count];
+        byte[] flags = new byte[count];
+        int[] title = new int[count];
+        int[] location = new int[count];
+        int[] calendarName = new int[count];
+        for (int i = 0; i < count; ++i) {
+            int position = buckets.getPosition(cell, i);
+            eventIds[i] = this.eventIds[position];
+            begin[i] = this.begin[position];
+            end[i] = this.end[position];
+            color[i] = this.color[position];
+            flags[i] = this.flags[position];
+            title[i] = this.title[position];
+            location[i] = this.location[position];
+            calendarName[i] = this.calendarName[position];
+        }
+        return new EventStore(count, eventIds, begin, end, color, flags, title, location, calendarName, strings);
+    }
+
+    /**
+     * Assigns the instances to the cells of a grid by begin and end.
+     *
+     * @param gridStart Timestamp of the first cell (00:00 UTC).
+     * @param cellCount Number of cells of the grid.
+     * @return The index from the cells to the positions of the store.
+     */
+    public DayBuckets buildDayBuckets(long gridStart, int cellCount) {
+        return DayBuckets.build(begin, end, size, gridStart, cellCount);
+    }
+
+    /**
+     * @return The number of instances.
+     */
+    public int size() {
+        return size;
+    }
+
+    public long getEventId(int i) {
+        return eventIds[i];
+    }
+
+    public long getBegin(int i) {
+        return begin[i];
+    }
+
+    public long getEnd(int i) {
+        return end[i];
+    }
+
+    public int getColor(int i) {
+        return color[i];
+    }
+
+    public boolean isAllDay(int i) {
+        return (flags[i] & FLAG_ALL_DAY) != 0;
+    }
+
+    public boolean hasAlarm(int i) {
+        return (flags[i] & FLAG_HAS_ALARM) != 0;
+    }
+
+    public String getTitle(int i) {
+        return strings[title[i]];
+    }
+
+    public String getLocation(int i) {
+        return strings[location[i]];
+    }
+
+    public String getCalendarName(int i) {
+        return strings[calendarName[i]];
+    }
+}
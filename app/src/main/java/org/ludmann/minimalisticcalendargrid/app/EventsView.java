@@ -4,11 +4,8 @@ import android.app.Activity;
 import android.app.LoaderManager;
 import android.content.ContentUris;
 import android.content.Context;
-import android.content.CursorLoader;
 import android.content.Intent;
 import android.content.Loader;
-import android.database.Cursor;
-import android.net.Uri;
 import android.os.Bundle;
 import android.provider.CalendarContract;
 import android.view.LayoutInflater;
@@ -17,48 +14,48 @@ import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.AdapterView;
-import android.widget.ArrayAdapter;
-import android.widget.ListAdapter;
+import android.widget.BaseAdapter;
 import android.widget.ListView;
 import android.widget.TextView;
 
 import java.text.DateFormat;
 import java.util.Calendar;
-import java.util.TimeZone;
 
 
-public class EventsView extends Activity implements LoaderManager.LoaderCallbacks<Cursor> {
+public class EventsView extends Activity implements LoaderManager.LoaderCallbacks<DayModel> {
+    private int day, month, year;
     /**
-     * The event fields to query.
+     * Counts the changes of the calendar provider.
      */
-    private static final String[] EVENTS_PROJECTION = new String[]{
-            CalendarContract.Instances.EVENT_ID,               // 0
-            CalendarContract.Instances.TITLE,                  // 1
-            CalendarContract.Instances.EVENT_LOCATION,         // 2
-            CalendarContract.Instances.BEGIN,                  // 3
-            CalendarContract.Instances.END,                    // 4
-            CalendarContract.Instances.ALL_DAY,                // 5
-            CalendarContract.Instances.VISIBLE,                // 6
-            CalendarContract.Instances.DISPLAY_COLOR,          // 7
-            CalendarContract.Instances.CALENDAR_DISPLAY_NAME,  // 8
-            CalendarContract.Instances.HAS_ALARM               // 9
-    };
+    private CalendarObserver calendarObserver;
     /**
-     * The selection string for the events.
+     * The {@link CalendarObserver} generation of the last requested load.
      */
-    private static final String EVENTS_SELECTION =
-            CalendarContract.Instances.VISIBLE + "=1";
+    private int requestedGeneration;
     /**
-     * start timestamp key for bundle
+     * Reloads the day if the calendar provider changes while the activity is in the foreground.
      */
-    private static final String START_TS = "startTS";
+    private final CalendarObserver.OnCalendarChangeListener calendarChangeListener = new CalendarObserver.OnCalendarChangeListener() {
+        @Override
+        public void onCalendarChange() {
+            getLoaderManager().restartLoader(0, null, EventsView.this);
+            requestedGeneration = calendarObserver.getGeneration();
+        }
+    };
+
     /**
-     * end timestamp key for bundle
+     * @param context The context that starts the activity.
+     * @param day     The day to show (the date fields are used, the time zone is ignored).
+     * @return The intent that starts the activity.
      */
-    private static final String END_TS = "endTS";
-
+    public static Intent newIntent(Context context, Calendar day) {
+        Intent intent = new Intent(context, EventsView.class);
 
-    private int day, month, year;
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(day.get(Calendar.YEAR), day.get(Calendar.MONTH), day.get(Calendar.DAY_OF_MONTH));
+        intent.putExtra("calendar", calendar);
+        return intent;
+    }
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -75,62 +72,38 @@ public class EventsView extends Activity implements LoaderManager.LoaderCallback
         ((ListView) findViewById(R.id.eventsListView)).setOnItemClickListener(new AdapterView.OnItemClickListener() {
             @Override
             public void onItemClick(AdapterView<?> adapterView, View view, int position, long id) {
-                Event event = (Event) adapterView.getItemAtPosition(position);
+                EventStore events = ((EventsAdapter) adapterView.getAdapter()).events;
 
                 Intent calIntent = new Intent(Intent.ACTION_VIEW);
-                calIntent.setData(ContentUris.withAppendedId(CalendarContract.Events.CONTENT_URI, event.id));
-                calIntent.putExtra(CalendarContract.EXTRA_EVENT_BEGIN_TIME, event.dtstart);
-                calIntent.putExtra(CalendarContract.EXTRA_EVENT_END_TIME, event.dtend);
+                calIntent.setData(ContentUris.withAppendedId(CalendarContract.Events.CONTENT_URI, events.getEventId(position)));
+                calIntent.putExtra(CalendarContract.EXTRA_EVENT_BEGIN_TIME, events.getBegin(position));
+                calIntent.putExtra(CalendarContract.EXTRA_EVENT_END_TIME, events.getEnd(position));
                 startActivity(calIntent);
             }
         });
 
 
-
-        calendar.setTimeZone(TimeZone.getTimeZone("UTC"));
-
-        calendar.set(Calendar.HOUR_OF_DAY, 0);
-        calendar.set(Calendar.MINUTE, 0);
-        calendar.set(Calendar.SECOND, 0);
-        calendar.set(Calendar.MILLISECOND, 0);
-        // add one millisecond: don't show events ending at midnight
-        long startOfDay = calendar.getTimeInMillis() + 1;
-        calendar.set(Calendar.HOUR_OF_DAY, calendar.getActualMaximum(Calendar.HOUR_OF_DAY));
-        calendar.set(Calendar.MINUTE, calendar.getActualMaximum(Calendar.MINUTE));
-        calendar.set(Calendar.SECOND, calendar.getActualMaximum(Calendar.SECOND));
-        calendar.set(Calendar.MILLISECOND, calendar.getActualMaximum(Calendar.MILLISECOND));
-        long endOfDay = calendar.getTimeInMillis();
-
-        Bundle bundle = new Bundle();
-        bundle.putLong(START_TS, startOfDay);
-        bundle.putLong(END_TS, endOfDay);
-
-        getLoaderManager().initLoader(0, bundle, this);
+        calendarObserver = CalendarObserver.getInstance(this);
+        getLoaderManager().initLoader(0, null, this);
+        requestedGeneration = calendarObserver.getGeneration();
     }
 
     @Override
     protected void onResume() {
         super.onResume();
+        calendarObserver.addListener(calendarChangeListener);
 
-        // Update data
+        // Update data (only if the calendar has changed since the last load)
+        if (requestedGeneration != calendarObserver.getGeneration()) {
+            getLoaderManager().restartLoader(0, null, this);
+            requestedGeneration = calendarObserver.getGeneration();
+        }
+    }
 
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTimeZone(TimeZone.getTimeZone("UTC"));
-        calendar.set(year, month, day, 0, 0, 0);
-        calendar.set(Calendar.MILLISECOND, 0);
-        // add one millisecond: don't show events ending at midnight
-        long startOfDay = calendar.getTimeInMillis() + 1;
-        calendar.set(Calendar.HOUR_OF_DAY, calendar.getActualMaximum(Calendar.HOUR_OF_DAY));
-        calendar.set(Calendar.MINUTE, calendar.getActualMaximum(Calendar.MINUTE));
-        calendar.set(Calendar.SECOND, calendar.getActualMaximum(Calendar.SECOND));
-        calendar.set(Calendar.MILLISECOND, calendar.getActualMaximum(Calendar.MILLISECOND));
-        long endOfDay = calendar.getTimeInMillis();
-
-        Bundle bundle = new Bundle();
-        bundle.putLong(START_TS, startOfDay);
-        bundle.putLong(END_TS, endOfDay);
-
-        getLoaderManager().restartLoader(0, bundle, this);
+    @Override
+    protected void onPause() {
+        super.onPause();
+        calendarObserver.removeListener(calendarChangeListener);
     }
 
     @Override
@@ -174,163 +147,100 @@ public class EventsView extends Activity implements LoaderManager.LoaderCallback
     }
 
     @Override
-    public Loader<Cursor> onCreateLoader(int loaderId, Bundle bundle) {
-        //String[] selectionArgs = new String[]{String.valueOf(bundle.getLong(END_TS)), String.valueOf(bundle.getLong(START_TS))};
-        Uri.Builder builder = CalendarContract.Instances.CONTENT_URI.buildUpon();
-        ContentUris.appendId(builder, bundle.getLong(START_TS));
-        ContentUris.appendId(builder, bundle.getLong(END_TS));
-        return new CursorLoader(this, builder.build(), EVENTS_PROJECTION, EVENTS_SELECTION, null, CalendarContract.Instances.BEGIN + " ASC");
+    public Loader<DayModel> onCreateLoader(int loaderId, Bundle bundle) {
+        return new DayLoader(this, day, month, year);
     }
 
     @Override
-    public void onLoadFinished(Loader<Cursor> cursorLoader, Cursor cursor) {
-
-        Event[] events = new Event[cursor.getCount()];
-
-        int i = 0;
-        while (cursor.moveToNext()) {
-            events[i] = new Event();
-            events[i].id = cursor.getLong(0);
-            events[i].title = cursor.getString(1);
-            events[i].location = cursor.getString(2);
-            events[i].dtstart = cursor.getLong(3);
-            events[i].dtend = cursor.getLong(4);
-            events[i].allDay = cursor.getInt(5) != 0;
-            events[i].visible = cursor.getInt(6) != 0;
-            events[i].displayColor = cursor.getInt(7);
-            events[i].calendarDisplayName = cursor.getString(8);
-            events[i].hasAlarm = cursor.getInt(9) != 0;
-            ++i;
-        }
-
-        ListAdapter adapter = new EventsAdapter(this, events);
-
-        ((ListView) findViewById(R.id.eventsListView)).setAdapter(adapter);
-
+    public void onLoadFinished(Loader<DayModel> loader, DayModel model) {
+        ((ListView) findViewById(R.id.eventsListView)).setAdapter(new EventsAdapter(model));
     }
 
     @Override
-    public void onLoaderReset(Loader<Cursor> cursorLoader) {
+    public void onLoaderReset(Loader<DayModel> loader) {
 
     }
 
     /**
-     * Holds the event in the ArrayAdapter.
+     * Shows the events of the {@link DayModel}. The position in the list is the index in the store.
      * <p/>
-     * To make it as simple as possible I've passed on the getters and setters.
+     * All texts are prepared by the {@link DayLoader}, so binding a row does not allocate.
      */
-    private class Event {
-        public long id;
-        public String title;
-        public String location;
-        public long dtstart;
-        public long dtend;
-        public boolean allDay;
-        public boolean visible;
-        public int displayColor;
-        public String calendarDisplayName;
-        public boolean hasAlarm;
-    }
+    private class EventsAdapter extends BaseAdapter {
+        private final DayModel model;
+        private final EventStore events;
 
+        public EventsAdapter(DayModel model) {
+            this.model = model;
+            this.events = model.getEvents();
+        }
 
-    private class EventsAdapter extends ArrayAdapter<Event> {
-        public EventsAdapter(Context context, Event[] events) {
-            super(context, R.layout.event_item, events);
+        @Override
+        public int getCount() {
+            return events.size();
         }
 
         @Override
-        public View getView(int position, View convertView, ViewGroup parent) {
-            // Get the data item for this position
-            Event event = getItem(position);
+        public Object getItem(int position) {
+            return position;
+        }
 
+        @Override
+        public long getItemId(int position) {
+            return events.getEventId(position);
+        }
+
+        @Override
+        public View getView(int position, View convertView, ViewGroup parent) {
+            ViewHolder holder;
             // Check if an existing view is being reused, otherwise inflate the view
             if (convertView == null) {
-                convertView = LayoutInflater.from(getContext()).inflate(R.layout.event_item, parent, false);
-            }
-
-            TextView textViewTime = (TextView) convertView.findViewById(R.id.time);
-            TextView textViewTitle = (TextView) convertView.findViewById(R.id.title);
-            TextView textViewLocation = (TextView) convertView.findViewById(R.id.location);
-            TextView textViewExtraInfo = (TextView) convertView.findViewById(R.id.extrainfo);
-
-
-            Calendar start = Calendar.getInstance();
-            if (event.allDay) {
-                // TODO: This works, but is this correct? Why is the time only at all day events shifted?
-                // dtstart is in UTC
-                start.setTimeInMillis(event.dtstart - TimeZone.getDefault().getOffset(event.dtstart));
-            } else {
-                start.setTimeInMillis(event.dtstart /*- TimeZone.getDefault().getOffset(event.dtstart)*/);
-            }
-            Calendar end = Calendar.getInstance();
-            if (event.allDay) {
-                // TODO: This works, but is this correct? Why is the time only at all day events shifted?
-                // dtend is in UTC
-                end.setTimeInMillis(event.dtend - TimeZone.getDefault().getOffset(event.dtend));
+                convertView = LayoutInflater.from(EventsView.this).inflate(R.layout.event_item, parent, false);
+                holder = new ViewHolder(convertView);
+                convertView.setTag(holder);
             } else {
-                end.setTimeInMillis(event.dtend /*- TimeZone.getDefault().getOffset(event.dtend)*/);
+                holder = (ViewHolder) convertView.getTag();
             }
 
-            Calendar startOfDay = Calendar.getInstance();
-            //startOfDay.setTimeZone(TimeZone.getTimeZone("UTC"));
-            startOfDay.set(year, month, day, 0, 0, 0);
-            startOfDay.set(Calendar.MILLISECOND, 0);
-            Calendar endOfDay = Calendar.getInstance();
-            //endOfDay.setTimeZone(TimeZone.getTimeZone("UTC"));
-            endOfDay.set(year, month, day, 23, 59, 59);
-            endOfDay.set(Calendar.MILLISECOND, endOfDay.getActualMaximum(Calendar.MILLISECOND));
-            endOfDay.add(Calendar.MILLISECOND, 1);
-            boolean onlyThisDay = !start.before(startOfDay) && !end.after(endOfDay);
-            //System.out.println("start before startofday? " + start.before(startOfDay) + " " + start.getTimeInMillis() + " " + startOfDay.getTimeInMillis());
-            //System.out.println("end after endofday? " + end.before(endOfDay) + " " + end.getTimeInMillis() + " " + endOfDay.getTimeInMillis());
-
-            String timeText;
-            if (event.allDay) {
-                if (onlyThisDay) {
-                    timeText = null;
-                } else {
-                    DateFormat dateFormat = DateFormat.getDateInstance();
-                    //DateFormat dateFormat = DateFormat.getDateTimeInstance(DateFormat.LONG, DateFormat.LONG);
-
-                    // Because all day events end at 00:00 of the next day ...
-                    end.add(Calendar.MILLISECOND, -1);
-                    timeText = dateFormat.format(start.getTime()) + " – " + dateFormat.format(end.getTime());
-                }
-            } else {
-                DateFormat dateFormat;
-                if (onlyThisDay) {
-                    dateFormat = DateFormat.getTimeInstance(DateFormat.SHORT);
-                } else {
-                    dateFormat = DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT);
-
-                }
-                timeText = dateFormat.format(start.getTime()) + " – " + dateFormat.format(end.getTime());
-            }
-
-
+            String timeText = model.getTimeText(position);
             if (timeText == null) {
-                textViewTime.setVisibility(View.GONE);
+                holder.time.setVisibility(View.GONE);
             } else {
-                textViewTime.setText(timeText);
+                holder.time.setVisibility(View.VISIBLE);
+                holder.time.setText(timeText);
             }
-            textViewTitle.setText(event.title);
-            textViewTitle.setTextColor(event.displayColor);
-            if (event.location == null || event.location.trim().length() == 0) {
-                textViewLocation.setVisibility(View.GONE);
+            holder.title.setText(events.getTitle(position));
+            holder.title.setTextColor(events.getColor(position));
+            String location = model.getLocation(position);
+            if (location == null) {
+                holder.location.setVisibility(View.GONE);
             } else {
-                textViewLocation.setText(event.location);
-            }
-
-            textViewExtraInfo.setText(getString(R.string.calendar_display_name) + ": " + event.calendarDisplayName);
-
-
-            if (event.hasAlarm) {
-                convertView.findViewById(R.id.reminder).setVisibility(View.VISIBLE);
-            } else {
-                convertView.findViewById(R.id.reminder).setVisibility(View.INVISIBLE);
+                holder.location.setVisibility(View.VISIBLE);
+                holder.location.setText(location);
             }
+            holder.extraInfo.setText(model.getExtraInfo(position));
+            holder.reminder.setVisibility(events.hasAlarm(position) ? View.VISIBLE : View.INVISIBLE);
 
             return convertView;
         }
     }
+
+    /**
+     * The views of a row of the event list.
+     */
+    private static class ViewHolder {
+        private final TextView time;
+        private final TextView title;
+        private final TextView location;
+        private final TextView extraInfo;
+        private final View reminder;
+
+        private ViewHolder(View view) {
+            time = (TextView) view.findViewById(R.id.time);
+            title = (TextView) view.findViewById(R.id.title);
+            location = (TextView) view.findViewById(R.id.location);
+            extraInfo = (TextView) view.findViewById(R.id.extrainfo);
+            reminder = view.findViewById(R.id.reminder);
+        }
+    }
 }
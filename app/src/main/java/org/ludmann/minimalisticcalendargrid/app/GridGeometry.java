@@ -0,0 +1,151 @@
+package org.ludmann.minimalisticcalendargrid.app;
+
+import org.ludmann.minimalisticcalendargrid.core.CalendarMath;
+import org.ludmann.minimalisticcalendargrid.core.MonthGrid;
+
+/**
+ * Immutable geometry of the grid of one month: first day, visible rows, week numbers, day numbers, the styles of the
+ * days (without the mark of the current day) and the boundaries of the cells.
+ * <p/>
+ * The geometry does not depend on the events, so it is computed once per month by the {@link GridGeometryCache} and
+ * shared by all loads of the month.
+ *
+ * @author Cornelius Ludmann
+ */
+public class GridGeometry {
+
+    private final int month;
+    private final int year;
+    private final long firstDay;
+    private final int rowCount;
+    private final String[] weekNumbers;
+    private final String[] dayNumbers;
+    private final int[] dayStyles;
+    /**
+     * Start of each cell (00:00 UTC). Has one more entry than there are cells, the end of the last cell.
+     */
+    private final long[] cellBounds;
+
+    private GridGeometry(int month, int year, long firstDay, int rowCount, String[] weekNumbers, String[] dayNumbers,
+                         int[] dayStyles, long[] cellBounds) {
+        this.month = month;
+        this.year = year;
+        this.firstDay = firstDay;
+        this.rowCount = rowCount;
+        this.weekNumbers = weekNumbers;
+        this.dayNumbers = dayNumbers;
+        this.dayStyles = dayStyles;
+        this.cellBounds = cellBounds;
+    }
+
+    /**
+     * Computes the geometry of a month.
+     *
+     * @param grid  The grid settings (first day of week, week numbering).
+     * @param month The month number.
+     * @param year  The year.
+     * @return The geometry.
+     */
+    public static GridGeometry compute(MonthGrid grid, int month, int year) {
+        long firstDay = grid.getFirstDay(year, month);
+        long firstOfMonth = CalendarMath.toEpochDay(year, month, 1);
+        long lastOfMonth = firstOfMonth + CalendarMath.getLengthOfMonth(year, month) - 1;
+        int rowCount = grid.getRowCount(year, month);
+        int cellCount = MonthModel.MAX_ROWS * MonthModel.DAYS_PER_WEEK;
+
+        String[] weekNumbers = new String[MonthModel.MAX_ROWS];
+        String[] dayNumbers = new String[cellCount];
+        int[] dayStyles = new int[cellCount];
+        long[] cellBounds = new long[cellCount + 1];
+
+        for (int row = 0; row < MonthModel.MAX_ROWS; ++row) {
+            weekNumbers[row] = String.valueOf(grid.getWeekOfYear(firstDay + row * MonthModel.DAYS_PER_WEEK));
+        }
+        for (int cell = 0; cell <= cellCount; ++cell) {
+            // due to the timestamp in the database are UTC: the days of the grid are UTC days
+            cellBounds[cell] = (firstDay + cell) * CalendarMath.DAY_IN_MILLIS;
+        }
+        for (int cell = 0; cell < cellCount; ++cell) {
+            long day = firstDay + cell;
+            dayNumbers[cell] = String.valueOf(CalendarMath.getDayOfMonth(day));
+            if (day < firstOfMonth || day > lastOfMonth) {
+                dayStyles[cell] = MonthModel.DAY_STYLE_LAST_NEXT_MONTH;
+            } else if (CalendarMath.isWeekend(day)) {
+                dayStyles[cell] = MonthModel.DAY_STYLE_WEEKEND;
+            } else {
+                dayStyles[cell] = MonthModel.DAY_STYLE_NORMAL;
+            }
+        }
+
+        return new GridGeometry(month, year, firstDay, rowCount, weekNumbers, dayNumbers, dayStyles, cellBounds);
+    }
+
+    public int getMonth() {
+        return month;
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    /**
+     * @return The epoch day of the first cell.
+     */
+    public long getFirstDay() {
+        return firstDay;
+    }
+
+    /**
+     * @return The number of visible rows (4 - 6).
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @param row The row index.
+     * @return The label of the calendar week.
+     */
+    public String getWeekNumber(int row) {
+        return weekNumbers[row];
+    }
+
+    /**
+     * @param cell The cell index (row * 7 + column).
+     * @return The label of the day of the month.
+     */
+    public String getDayNumber(int cell) {
+        return dayNumbers[cell];
+    }
+
+    /**
+     * @param cell The cell index (row * 7 + column).
+     * @return One of the DAY_STYLE_* constants of {@link MonthModel} except DAY_STYLE_NOW.
+     */
+    public int getDayStyle(int cell) {
+        return dayStyles[cell];
+    }
+
+    /**
+     * @param cell The cell index (row * 7 + column).
+     * @return Timestamp of the start of the cell (00:00 UTC).
+     */
+    public long getCellStart(int cell) {
+        return cellBounds[cell];
+    }
+
+    /**
+     * @param cell The cell index (row * 7 + column).
+     * @return Timestamp of the end of the cell (exclusive).
+     */
+    public long getCellEnd(int cell) {
+        return cellBounds[cell + 1];
+    }
+
+    /**
+     * @return Timestamp of the end of the visible rows (exclusive).
+     */
+    public long getGridEnd() {
+        return cellBounds[rowCount * MonthModel.DAYS_PER_WEEK];
+    }
+}
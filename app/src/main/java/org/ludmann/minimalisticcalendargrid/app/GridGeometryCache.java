@@ -0,0 +1,124 @@
+package org.ludmann.minimalisticcalendargrid.app;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.util.LruCache;
+
+import org.ludmann.minimalisticcalendargrid.core.MonthGrid;
+
+import java.util.Locale;
+
+/**
+ * In-memory LRU cache of {@link GridGeometry}s.
+ * <p/>
+ * The geometries are keyed by year, month, first day of week and locale, so navigating to a month a second time needs
+ * no date arithmetic. A geometry is about 2 KB (the labels, styles and bounds of its cells), so the number of cached
+ * geometries is limited by {@code R.integer.grid_geometry_cache_size}. A change of the locale or the time zone clears
+ * the cache and the {@link MonthCache} (the week numbering and the current day may have changed).
+ * <p/>
+ * Thread safe: the geometries are requested by the loaders in the background.
+ *
+ * @author Cornelius Ludmann
+ */
+public class GridGeometryCache {
+
+    private static GridGeometryCache instance;
+
+    private final LruCache<Key, GridGeometry> geometries;
+    /**
+     * Grid settings of {@link #gridLocale}. Null after a locale or time zone change.
+     */
+    private MonthGrid grid;
+    private Locale gridLocale;
+
+    private GridGeometryCache(int maxGeometries) {
+        this.geometries = new LruCache<Key, GridGeometry>(maxGeometries);
+    }
+
+    /**
+     * @param context A context to read the cache size and to register for the locale and time zone broadcasts.
+     * @return The process wide cache.
+     */
+    public static synchronized GridGeometryCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new GridGeometryCache(context.getResources().getInteger(R.integer.grid_geometry_cache_size));
+            final Context applicationContext = context.getApplicationContext();
+            IntentFilter filter = new IntentFilter();
+            filter.addAction(Intent.ACTION_LOCALE_CHANGED);
+            filter.addAction(Intent.ACTION_TIMEZONE_CHANGED);
+            applicationContext.registerReceiver(new BroadcastReceiver() {
+                @Override
+                public void onReceive(Context context, Intent intent) {
+                    instance.evictAll();
+                    MonthCache.getInstance(applicationContext).evictAll();
+                }
+            }, filter);
+        }
+        return instance;
+    }
+
+    /**
+     * @param month The month number.
+     * @param year  The year.
+     * @return The geometry of the month for the current locale.
+     */
+    public synchronized GridGeometry get(int month, int year) {
+        Locale locale = Locale.getDefault();
+        if (grid == null || !locale.equals(gridLocale)) {
+            grid = CalendarLabels.getMonthGrid();
+            gridLocale = locale;
+        }
+        Key key = new Key(year, month, grid.getFirstDayOfWeek(), locale);
+        GridGeometry geometry = geometries.get(key);
+        if (geometry == null) {
+            geometry = GridGeometry.compute(grid, month, year);
+            geometries.put(key, geometry);
+        }
+        return geometry;
+    }
+
+    /**
+     * Removes all geometries.
+     */
+    public synchronized void evictAll() {
+        geometries.evictAll();
+        grid = null;
+        gridLocale = null;
+    }
+
+    private static final class Key {
+        private final int year;
+        private final int month;
+        private final int firstDayOfWeek;
+        private final Locale locale;
+
+        private Key(int year, int month, int firstDayOfWeek, Locale locale) {
+            this.year = year;
+            this.month = month;
+            this.firstDayOfWeek = firstDayOfWeek;
+            this.locale = locale;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof Key))
+                return false;
+            Key key = (Key) o;
+            return year == key.year && month == key.month && firstDayOfWeek == key.firstDayOfWeek
+                    && locale.equals(key.locale);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = year;
+            result = 31 * result + month;
+            result = 31 * result + firstDayOfWeek;
+            result = 31 * result + locale.hashCode();
+            return result;
+        }
+    }
+}
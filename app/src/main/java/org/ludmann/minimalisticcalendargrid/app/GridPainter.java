@@ -0,0 +1,214 @@
+package org.ludmann.minimalisticcalendargrid.app;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.graphics.drawable.Drawable;
+import android.util.SparseArray;
+
+/**
+ * Paints, drawables and drawing of the parts of a calendar row (week number, day cell, event line).
+ * <p/>
+ * Shared by the {@link MonthGridView} and the {@link WeekRowView}, so both modes look the same.
+ * <p/>
+ * A cell draws at most as many event lines as fit below the day number (see {@link #getCapacity(int, int)}); if a day
+ * has more events, the last line shows the number of hidden events ("+N") instead.
+ * <p/>
+ * The drawables are created from constant states shared by all painters, so a new painter (e. g. of a recreated
+ * activity) does not inflate the shapes again. Must only be used on the UI thread.
+ *
+ * @author Cornelius Ludmann
+ */
+public class GridPainter {
+
+    /**
+     * Number of column weights: one for the week number and two for each day (like the weekday header).
+     */
+    public static final int COLUMN_WEIGHTS = 1 + 2 * MonthModel.DAYS_PER_WEEK;
+
+    /**
+     * Constant states of the drawables by resource id.
+     */
+    private static final SparseArray<Drawable.ConstantState> DRAWABLE_STATES = new SparseArray<Drawable.ConstantState>();
+
+    private final Paint weekNumberPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint dayNumberPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint eventPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint morePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    /**
+     * Labels of the overflow line, created on first use.
+     */
+    private final String[] moreLabels = new String[100];
+    private final Drawable cellBackground;
+    private final Drawable eventBackground;
+    private final Drawable allDayEventBackground;
+    private final Drawable[] dayNumberBackgrounds = new Drawable[4];
+    private final int[] dayNumberColors = new int[4];
+    private final float cellSpacing;
+    private final float lineHeight;
+    private final float baselineOffset;
+
+    public GridPainter(Context context) {
+        Resources resources = context.getResources();
+        float textSize = resources.getDimension(R.dimen.grid_text_size);
+        cellSpacing = resources.getDimension(R.dimen.grid_cell_spacing);
+
+        weekNumberPaint.setTextSize(textSize);
+        weekNumberPaint.setColor(resources.getColor(android.R.color.darker_gray));
+
+        dayNumberPaint.setTextSize(textSize);
+        dayNumberPaint.setTypeface(Typeface.DEFAULT_BOLD);
+        dayNumberPaint.setTextAlign(Paint.Align.CENTER);
+
+        eventPaint.setTextSize(textSize);
+
+        morePaint.setTextSize(textSize);
+        morePaint.setColor(resources.getColor(android.R.color.darker_gray));
+
+        Paint.FontMetrics fontMetrics = new Paint.FontMetrics();
+        lineHeight = dayNumberPaint.getFontMetrics(fontMetrics);
+        baselineOffset = -fontMetrics.ascent;
+
+        cellBackground = getDrawable(resources, R.drawable.alldayeventbackground);
+        eventBackground = getDrawable(resources, R.drawable.eventbackground);
+        allDayEventBackground = getDrawable(resources, R.drawable.alldayeventbackground);
+
+        dayNumberBackgrounds[MonthModel.DAY_STYLE_NORMAL] = getDrawable(resources, R.drawable.daynumber);
+        dayNumberBackgrounds[MonthModel.DAY_STYLE_WEEKEND] = getDrawable(resources, R.drawable.daynumber_weekend);
+        dayNumberBackgrounds[MonthModel.DAY_STYLE_LAST_NEXT_MONTH] = getDrawable(resources, R.drawable.daynumber_lastnextweek);
+        dayNumberBackgrounds[MonthModel.DAY_STYLE_NOW] = getDrawable(resources, R.drawable.daynumber_now);
+        dayNumberColors[MonthModel.DAY_STYLE_NORMAL] = 0xff000000;
+        dayNumberColors[MonthModel.DAY_STYLE_WEEKEND] = 0xffffffff;
+        dayNumberColors[MonthModel.DAY_STYLE_LAST_NEXT_MONTH] = 0xff000000;
+        dayNumberColors[MonthModel.DAY_STYLE_NOW] = 0xffffffff;
+    }
+
+    /**
+     * @param resources The resources of the app.
+     * @param id        The resource id of the drawable.
+     * @return A new drawable (with its own bounds) that shares the constant state of the resource.
+     */
+    private static Drawable getDrawable(Resources resources, int id) {
+        Drawable.ConstantState state = DRAWABLE_STATES.get(id);
+        if (state != null)
+            return state.newDrawable(resources);
+        Drawable drawable = resources.getDrawable(id);
+        if (drawable.getConstantState() != null) {
+            DRAWABLE_STATES.put(id, drawable.getConstantState());
+        }
+        return drawable;
+    }
+
+    /**
+     * @return Height of a text line (day number or event).
+     */
+    public float getLineHeight() {
+        return lineHeight;
+    }
+
+    /**
+     * @param top    Top edge of the cell.
+     * @param bottom Bottom edge of the cell.
+     * @return Number of event lines that fit below the day number.
+     */
+    public int getCapacity(int top, int bottom) {
+        int line = (int) lineHeight;
+        return Math.max(0, (bottom - top - line) / line);
+    }
+
+    /**
+     * @param eventCount Number of events of the day.
+     * @param capacity   Number of event lines of the cell (see {@link #getCapacity(int, int)}).
+     * @return Number of events to draw. If not all events fit, one line is left for the overflow line.
+     */
+    public static int getVisibleEventCount(int eventCount, int capacity) {
+        return eventCount <= capacity ? eventCount : Math.max(0, capacity - 1);
+    }
+
+    /**
+     * @param left   Left edge of the row (after the padding).
+     * @param column The column of the day (0 - 6).
+     * @param unit   Width of one column weight.
+     * @return Left edge of the day cell.
+     */
+    public int getCellLeft(int left, int column, float unit) {
+        return (int) (left + unit + column * 2 * unit);
+    }
+
+    /**
+     * @param left   Left edge of the row (after the padding).
+     * @param column The column of the day (0 - 6).
+     * @param unit   Width of one column weight.
+     * @return Right edge of the day cell.
+     */
+    public int getCellRight(int left, int column, float unit) {
+        return (int) (left + unit + column * 2 * unit + 2 * unit - cellSpacing);
+    }
+
+    public void drawWeekNumber(Canvas canvas, String weekNumber, float left, float top) {
+        canvas.drawText(weekNumber, left, top + baselineOffset, weekNumberPaint);
+    }
+
+    /**
+     * Draws the background of a cell and the day number in its first line.
+     */
+    public void drawDay(Canvas canvas, String dayNumber, int dayStyle, int left, int top, int right, int bottom) {
+        cellBackground.setBounds(left, top, right, bottom);
+        cellBackground.draw(canvas);
+
+        Drawable dayNumberBackground = dayNumberBackgrounds[dayStyle];
+        dayNumberBackground.setBounds(left, top, right, top + (int) lineHeight);
+        dayNumberBackground.draw(canvas);
+        dayNumberPaint.setColor(dayNumberColors[dayStyle]);
+        dayNumberPaint.setTypeface(dayStyle == MonthModel.DAY_STYLE_LAST_NEXT_MONTH ? Typeface.DEFAULT : Typeface.DEFAULT_BOLD);
+        canvas.drawText(dayNumber, (left + right) / 2f, top + baselineOffset, dayNumberPaint);
+    }
+
+    /**
+     * Draws an event line.
+     *
+     * @param title    The title (may be null).
+     * @param titleEnd Number of characters of the title to draw (see {@link #measureTitle(String, float)}).
+     */
+    public void drawEvent(Canvas canvas, String title, int titleEnd, int color, boolean allDay, int left, int top, int right) {
+        Drawable background = allDay ? allDayEventBackground : eventBackground;
+        background.setBounds(left, top, right, top + (int) lineHeight);
+        background.draw(canvas);
+
+        // single line without ellipsis (like the former event TextViews)
+        if (title == null)
+            return;
+        eventPaint.setColor(color);
+        canvas.drawText(title, 0, titleEnd, left, top + baselineOffset, eventPaint);
+    }
+
+    /**
+     * Draws the overflow line of a cell.
+     *
+     * @param hiddenCount Number of events that are not drawn.
+     */
+    public void drawMore(Canvas canvas, int hiddenCount, int left, int top) {
+        String label;
+        if (hiddenCount < moreLabels.length) {
+            label = moreLabels[hiddenCount];
+            if (label == null) {
+                label = "+" + hiddenCount;
+                moreLabels[hiddenCount] = label;
+            }
+        } else {
+            label = "+" + hiddenCount;
+        }
+        canvas.drawText(label, left, top + baselineOffset, morePaint);
+    }
+
+    /**
+     * @param title The title (may be null).
+     * @param width The width of the cell.
+     * @return The number of characters of the title that fit into the cell.
+     */
+    public int measureTitle(String title, float width) {
+        return title == null ? 0 : eventPaint.breakText(title, true, width, null);
+    }
+}
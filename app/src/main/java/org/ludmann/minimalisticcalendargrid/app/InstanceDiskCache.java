@@ -0,0 +1,218 @@
+package org.ludmann.minimalisticcalendargrid.app;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.TimeZone;
+
+/**
+ * Persistent cache of the instances of loaded months in the app's cache directory.
+ * <p/>
+ * Expanding recurring events is the slowest query of the provider, so the instances of each loaded month are written
+ * into a file of fixed-width records with a string table (see {@link EventStore#writeTo}). Revisiting a month maps
+ * the file into memory and reads the records without a query. A file is only valid for the stored
+ * {@link CalendarObserver} generation it was written with, the same range of days, the same time zone (the query by
+ * day uses local days) and the same query mode (see
+ * {@link MonthLoader#setQueryByDay(Context, boolean)}). Each query mode has its own file per month, so the
+ * {@link SearchIndex}, which always reads the instances with milliseconds, does not replace the file of the query by
+ * day; the total size of the files is limited by
+ * {@code R.integer.instance_disk_cache_size_kb}, the least recently used months are deleted first.
+ * <p/>
+ * Thread safe: the loaders run in parallel.
+ *
+ * @author Cornelius Ludmann
+ */
+public class InstanceDiskCache {
+
+    /**
+     * Changed on every change of the file format.
+     */
+    private static final int VERSION = 4;
+    /**
+     * Version, stored generation, grid start, grid end, query mode and length of the time zone id; the id follows.
+     */
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 1 + 2;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static InstanceDiskCache instance;
+
+    private final File directory;
+    private final long maxBytes;
+    private final CalendarObserver calendarObserver;
+
+    private InstanceDiskCache(File directory, long maxBytes, CalendarObserver calendarObserver) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.calendarObserver = calendarObserver;
+    }
+
+    /**
+     * @param context A context to find the cache directory and to read the cache size.
+     * @return The process wide cache.
+     */
+    public static synchronized InstanceDiskCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new InstanceDiskCache(new File(context.getCacheDir(), "instances"),
+                    context.getResources().getInteger(R.integer.instance_disk_cache_size_kb) * 1024L,
+                    CalendarObserver.getInstance(context));
+        }
+        return instance;
+    }
+
+    /**
+     * @return The stored {@link CalendarObserver} generation. Must be read before the query of the instances that are
+     * put into the cache.
+     */
+    public int getGeneration() {
+        return calendarObserver.getStoredGeneration();
+    }
+
+    /**
+     * @param geometry The geometry of the month.
+     * @param byDay    The query mode.
+     * @return The instances of the visible rows of the month or null if the month is not cached or outdated.
+     */
+    public synchronized EventStore get(GridGeometry geometry, boolean byDay) {
+        File file = getFile(geometry, byDay);
+        if (!file.exists())
+            return null;
+        try {
+            RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+            try {
+                FileChannel channel = randomAccessFile.getChannel();
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (buffer.getInt() != VERSION || buffer.getInt() != getGeneration()
+                        || buffer.getLong() != geometry.getCellStart(0) || buffer.getLong() != geometry.getGridEnd()
+                        || (buffer.get() != 0) != byDay
+                        || !readTimeZoneId(buffer).equals(TimeZone.getDefault().getID())) {
+                    file.delete();
+                    return null;
+                }
+                EventStore events = EventStore.readFrom(buffer);
+                // least recently used months are evicted first
+                file.setLastModified(System.currentTimeMillis());
+                return events;
+            } finally {
+                randomAccessFile.close();
+            }
+        } catch (IOException e) {
+            file.delete();
+            return null;
+        } catch (RuntimeException e) {
+            // truncated or corrupt file (e. g. BufferUnderflowException, IllegalArgumentException): a cache miss
+            Log.w("InstanceDiskCache", "Cannot read " + file, e);
+            file.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Writes the instances of a month and evicts the least recently used months if the cache is too big.
+     *
+     * @param geometry   The geometry of the month.
+     * @param generation The result of {@link #getGeneration()} before the query.
+     * @param byDay      The query mode.
+     * @param events     The instances of the visible rows of the month.
+     */
+    public synchronized void put(GridGeometry geometry, int generation, boolean byDay, EventStore events) {
+        if (generation != getGeneration())
+            return;
+        if (!directory.isDirectory() && !directory.mkdirs())
+            return;
+
+        byte[] timeZoneId = TimeZone.getDefault().getID().getBytes(UTF_8);
+        byte[][] encodedStrings = events.encodeStrings();
+        int size = HEADER_SIZE + timeZoneId.length + events.getEncodedSize(encodedStrings);
+        File file = getFile(geometry, byDay);
+        // write into a temporary file and rename it, so a reader never sees a partial file
+        File tmp = new File(directory, file.getName() + ".tmp");
+        try {
+            RandomAccessFile randomAccessFile = new RandomAccessFile(tmp, "rw");
+            try {
+                randomAccessFile.setLength(size);
+                ByteBuffer buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+                buffer.putInt(VERSION);
+                buffer.putInt(generation);
+                buffer.putLong(geometry.getCellStart(0));
+                buffer.putLong(geometry.getGridEnd());
+                buffer.put((byte) (byDay ? 1 : 0));
+                buffer.putShort((short) timeZoneId.length);
+                buffer.put(timeZoneId);
+                events.writeTo(buffer, encodedStrings);
+            } finally {
+                randomAccessFile.close();
+            }
+            if (!tmp.renameTo(file)) {
+                tmp.delete();
+                return;
+            }
+        } catch (IOException e) {
+            Log.w("InstanceDiskCache", "Cannot write " + file, e);
+            tmp.delete();
+            return;
+        }
+        trimToSize();
+    }
+
+    /**
+     * Deletes all months, e. g. because a reload is forced.
+     */
+    public synchronized void evictAll() {
+        File[] files = directory.listFiles();
+        if (files == null)
+            return;
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    /**
+     * Deletes the least recently used months until the total size fits into the limit.
+     */
+    private void trimToSize() {
+        File[] files = directory.listFiles();
+        if (files == null)
+            return;
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        if (total <= maxBytes)
+            return;
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long difference = a.lastModified() - b.lastModified();
+                return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
+            }
+        });
+        for (int i = 0; i < files.length && total > maxBytes; ++i) {
+            total -= files[i].length();
+            files[i].delete();
+        }
+    }
+
+    /**
+     * Reads the length and the bytes of the time zone id.
+     */
+    private static String readTimeZoneId(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xffff];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private File getFile(GridGeometry geometry, boolean byDay) {
+        return new File(directory, (geometry.getYear() * 12 + geometry.getMonth()) + (byDay ? "-day" : "") + ".bin");
+    }
+}
@@ -0,0 +1,113 @@
+package org.ludmann.minimalisticcalendargrid.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.provider.CalendarContract;
+
+/**
+ * The provider the instances are queried from.
+ * <p/>
+ * Usually this is the calendar provider of the system. The Robolectric tests in src/test register a stand-in provider
+ * (authority {@link #STAND_IN_AUTHORITY}) that generates a calendar of configurable density, so heavy calendars can be
+ * measured without a real account. The stand-in answers the same instance URIs and columns; the selection is ignored.
+ * <p/>
+ * The settings are kept in the preferences. The app does not change them, only the tests do.
+ *
+ * @author Cornelius Ludmann
+ */
+public class InstanceSource {
+
+    /**
+     * Authority of the stand-in provider of the tests.
+     */
+    public static final String STAND_IN_AUTHORITY = "org.ludmann.minimalisticcalendargrid.app.standin";
+
+    private static final String PREFERENCES = "instance_source";
+    private static final String KEY_STAND_IN = "stand_in";
+    private static final String KEY_EVENTS_PER_DAY = "stand_in_events_per_day";
+    private static final String KEY_WEEKLY_SERIES = "stand_in_weekly_series";
+    private static final String KEY_MULTI_DAY_PERCENT = "stand_in_multi_day_percent";
+
+    private static InstanceSource instance;
+
+    private final SharedPreferences preferences;
+
+    private InstanceSource(SharedPreferences preferences) {
+        this.preferences = preferences;
+    }
+
+    /**
+     * @param context A context to get the preferences.
+     * @return The process wide source.
+     */
+    public static synchronized InstanceSource getInstance(Context context) {
+        if (instance == null) {
+            instance = new InstanceSource(context.getApplicationContext().getSharedPreferences(PREFERENCES,
+                    Context.MODE_PRIVATE));
+        }
+        return instance;
+    }
+
+    /**
+     * @return True if the instances are queried from the stand-in provider (debug builds only).
+     */
+    public boolean isStandIn() {
+        return BuildConfig.DEBUG && preferences.getBoolean(KEY_STAND_IN, false);
+    }
+
+    /**
+     * Switches the provider. The caches should be cleared afterwards.
+     *
+     * @param standIn True for the stand-in provider.
+     */
+    public void setStandIn(boolean standIn) {
+        preferences.edit().putBoolean(KEY_STAND_IN, standIn).apply();
+    }
+
+    /**
+     * Configures the calendar of the stand-in provider.
+     *
+     * @param eventsPerDay    Number of single instances per day.
+     * @param weeklySeries    Number of weekly recurring events.
+     * @param multiDayPercent Percentage of the single instances that span two to four days.
+     */
+    public void setStandInDensity(int eventsPerDay, int weeklySeries, int multiDayPercent) {
+        preferences.edit()
+                .putInt(KEY_EVENTS_PER_DAY, eventsPerDay)
+                .putInt(KEY_WEEKLY_SERIES, weeklySeries)
+                .putInt(KEY_MULTI_DAY_PERCENT, multiDayPercent)
+                .apply();
+    }
+
+    public int getStandInEventsPerDay() {
+        return preferences.getInt(KEY_EVENTS_PER_DAY, 8);
+    }
+
+    public int getStandInWeeklySeries() {
+        return preferences.getInt(KEY_WEEKLY_SERIES, 5);
+    }
+
+    public int getStandInMultiDayPercent() {
+        return preferences.getInt(KEY_MULTI_DAY_PERCENT, 10);
+    }
+
+    /**
+     * @return The base of the instance URI with millisecond bounds ({@link CalendarContract.Instances#CONTENT_URI}).
+     */
+    public Uri getInstancesUri() {
+        if (isStandIn())
+            return Uri.parse("content://" + STAND_IN_AUTHORITY + "/instances/when");
+        return CalendarContract.Instances.CONTENT_URI;
+    }
+
+    /**
+     * @return The base of the instance URI with Julian day bounds
+     * ({@link CalendarContract.Instances#CONTENT_BY_DAY_URI}).
+     */
+    public Uri getInstancesByDayUri() {
+        if (isStandIn())
+            return Uri.parse("content://" + STAND_IN_AUTHORITY + "/instances/whenbyday");
+        return CalendarContract.Instances.CONTENT_BY_DAY_URI;
+    }
+}
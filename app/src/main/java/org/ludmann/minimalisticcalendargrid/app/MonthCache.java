@@ -0,0 +1,75 @@
+package org.ludmann.minimalisticcalendargrid.app;
+
+import android.content.Context;
+import android.util.LruCache;
+
+/**
+ * In-memory LRU cache of loaded months.
+ * <p/>
+ * The months are keyed by month and year. The number of cached months is configured by
+ * {@code R.integer.month_cache_size}. A cached month is only valid as long as the {@link CalendarObserver} generation
+ * has not changed since it was loaded; a change of the provider evicts all months.
+ *
+ * @author Cornelius Ludmann
+ */
+public class MonthCache {
+
+    private static MonthCache instance;
+
+    private final LruCache<Integer, MonthModel> cache;
+    private final CalendarObserver calendarObserver;
+
+    private MonthCache(int maxMonths, CalendarObserver calendarObserver) {
+        this.cache = new LruCache<Integer, MonthModel>(maxMonths);
+        this.calendarObserver = calendarObserver;
+    }
+
+    /**
+     * @param context A context to read the cache size.
+     * @return The process wide cache.
+     */
+    public static synchronized MonthCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new MonthCache(context.getResources().getInteger(R.integer.month_cache_size),
+                    CalendarObserver.getInstance(context));
+        }
+        return instance;
+    }
+
+    /**
+     * @param month The month number.
+     * @param year  The year.
+     * @return The cached month or null if the month is not in the cache.
+     */
+    public MonthModel get(int month, int year) {
+        MonthModel model = cache.get(key(month, year));
+        if (model != null && model.getGeneration() != calendarObserver.getGeneration()) {
+            // the provider has changed since this month was loaded
+            evictAll();
+            return null;
+        }
+        return model;
+    }
+
+    /**
+     * Adds a loaded month to the cache.
+     *
+     * @param model The month.
+     */
+    public void put(MonthModel model) {
+        if (model.getGeneration() == calendarObserver.getGeneration()) {
+            cache.put(key(model.getMonth(), model.getYear()), model);
+        }
+    }
+
+    /**
+     * Removes all months, e. g. because a reload is forced.
+     */
+    public void evictAll() {
+        cache.evictAll();
+    }
+
+    private static Integer key(int month, int year) {
+        return year * 12 + month;
+    }
+}
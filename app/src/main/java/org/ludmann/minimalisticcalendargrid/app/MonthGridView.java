@@ -0,0 +1,365 @@
+package org.ludmann.minimalisticcalendargrid.app;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.util.AttributeSet;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.SoundEffectConstants;
+import android.view.View;
+
+import java.util.Calendar;
+
+/**
+ * Draws the month grid (week numbers, day numbers and event titles) directly on the canvas.
+ * <p/>
+ * The content comes from a prepared {@link MonthModel}, so the cost of a month does not depend on the number of
+ * views. The columns match the weekday header (weight 1 for the week number, weight 2 for each day).
+ * <p/>
+ * The visible length of each event title is measured once per month (not per frame) into arrays that are reused for
+ * the next month, so switching months does not allocate anything in the view.
+ * <p/>
+ * Each cell draws only as many events as fit into the measured row height, ranked all-day first and then by start
+ * (the order of the {@link MonthModel}); the rest is summarized by a "+N" line. So the cost of drawing and measuring
+ * a month is bounded by the size of the grid, not by the number of events of the densest day.
+ * <p/>
+ * Events that cover several days are drawn as one bar per week row in the lane the {@link MonthModel} assigned; the
+ * events of a day follow below the lanes in use at the day.
+ * <p/>
+ * A reload of the displayed month (e. g. after a change of the provider) is compared cell by cell with the drawn
+ * month; only the changed days are measured and drawn again.
+ *
+ * @author Cornelius Ludmann
+ */
+public class MonthGridView extends View {
+
+    /**
+     * Listener for taps on a day.
+     */
+    public interface OnDayClickListener {
+        /**
+         * @param day The tapped day (00:00 UTC).
+         */
+        void onDayClick(Calendar day);
+    }
+
+    private final GridPainter painter;
+    private final float rowSpacing;
+    private final GestureDetector gestureDetector;
+
+    /**
+     * Start of the title lengths of each cell in {@link #titleEnds}.
+     */
+    private final int[] titleOffsets = new int[MonthModel.MAX_ROWS * MonthModel.DAYS_PER_WEEK + 1];
+    /**
+     * Number of characters of each drawn event title that fit into the cell. Grows if a month has more events, but is
+     * never shrunk, so it is recycled across month refreshes.
+     */
+    private int[] titleEnds = new int[64];
+    /**
+     * Number of characters of each bar title that fit into the whole bar. Grows like {@link #titleEnds}.
+     */
+    private int[] barTitleEnds = new int[16];
+    /**
+     * False if the titles have to be measured before the next draw.
+     */
+    private boolean titlesMeasured = false;
+    /**
+     * Number of event lines of a cell, computed with the titles.
+     */
+    private int capacity;
+
+    private MonthModel model;
+    private OnDayClickListener onDayClickListener;
+
+    public MonthGridView(Context context) {
+        this(context, null);
+    }
+
+    public MonthGridView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+
+        painter = new GridPainter(context);
+        rowSpacing = getResources().getDimension(R.dimen.grid_row_spacing);
+
+        gestureDetector = new GestureDetector(context, new GestureDetector.SimpleOnGestureListener() {
+            @Override
+            public boolean onDown(MotionEvent e) {
+                return true;
+            }
+
+            @Override
+            public boolean onSingleTapUp(MotionEvent e) {
+                int cell = getCellAt(e.getX(), e.getY());
+                if (cell < 0 || onDayClickListener == null)
+                    return false;
+                playSoundEffect(SoundEffectConstants.CLICK);
+                onDayClickListener.onDayClick(model.getDay(cell));
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Sets the month to draw.
+     *
+     * @param model The month or null for an empty grid.
+     */
+    public void setModel(MonthModel model) {
+        MonthModel previous = this.model;
+        this.model = model;
+        if (previous == null || model == null || !titlesMeasured || !model.hasSameGrid(previous)) {
+            titlesMeasured = false;
+            invalidate();
+            return;
+        }
+
+        // same days: only the changed cells (or rows, if their bars changed) are measured and drawn again
+        float unit = getColumnUnit();
+        float rowHeight = getRowHeight();
+        for (int row = 0; row < model.getRowCount(); ++row) {
+            float top = getPaddingTop() + row * (rowHeight + rowSpacing);
+            boolean sameBars = model.hasSameBars(previous, row);
+            if (!sameBars) {
+                // the bars are measured with the titles
+                titlesMeasured = false;
+            }
+            for (int column = 0; column < MonthModel.DAYS_PER_WEEK; ++column) {
+                int cell = row * MonthModel.DAYS_PER_WEEK + column;
+                if (sameBars && model.hasSameCell(previous, cell))
+                    continue;
+                if (titlesMeasured && getVisibleEventCount(cell) == titleOffsets[cell + 1] - titleOffsets[cell]) {
+                    measureCell(cell, unit);
+                } else {
+                    // the offsets of the following cells move
+                    titlesMeasured = false;
+                }
+                invalidate(painter.getCellLeft(getPaddingLeft(), column, unit), (int) top,
+                        painter.getCellRight(getPaddingLeft(), column, unit), (int) (top + rowHeight) + 1);
+            }
+        }
+    }
+
+    /**
+     * @return The displayed month or null.
+     */
+    public MonthModel getModel() {
+        return model;
+    }
+
+    public void setOnDayClickListener(OnDayClickListener onDayClickListener) {
+        this.onDayClickListener = onDayClickListener;
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        titlesMeasured = false;
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        return gestureDetector.onTouchEvent(event) || super.onTouchEvent(event);
+    }
+
+    /**
+     * @return Width of one column weight.
+     */
+    private float getColumnUnit() {
+        return (float) (getWidth() - getPaddingLeft() - getPaddingRight()) / GridPainter.COLUMN_WEIGHTS;
+    }
+
+    /**
+     * @return Height of a row (without the spacing between the rows).
+     */
+    private float getRowHeight() {
+        int rowCount = model.getRowCount();
+        return (getHeight() - getPaddingTop() - getPaddingBottom() - (rowCount - 1) * rowSpacing) / rowCount;
+    }
+
+    /**
+     * Hit-tests a position to a day.
+     *
+     * @param x The x position.
+     * @param y The y position.
+     * @return The cell index or -1 if there is no day at this position.
+     */
+    private int getCellAt(float x, float y) {
+        if (model == null)
+            return -1;
+
+        float unit = getColumnUnit();
+        float column = (x - getPaddingLeft() - unit) / (2 * unit);
+        int row = (int) ((y - getPaddingTop()) / (getRowHeight() + rowSpacing));
+        if (column < 0 || column >= MonthModel.DAYS_PER_WEEK || row < 0 || row >= model.getRowCount())
+            return -1;
+
+        return row * MonthModel.DAYS_PER_WEEK + (int) column;
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (model == null)
+            return;
+
+        float unit = getColumnUnit();
+        float rowHeight = getRowHeight();
+
+        long start = StageTimer.begin(StageTimer.STAGE_DRAW);
+        if (!titlesMeasured) {
+            long measureStart = StageTimer.begin(StageTimer.STAGE_MEASURE);
+            measureTitles(unit, rowHeight);
+            StageTimer.end(StageTimer.STAGE_MEASURE, measureStart);
+        }
+
+        for (int row = 0; row < model.getRowCount(); ++row) {
+            float top = getPaddingTop() + row * (rowHeight + rowSpacing);
+            float bottom = top + rowHeight;
+
+            painter.drawWeekNumber(canvas, model.getWeekNumber(row), getPaddingLeft(), top);
+
+            for (int column = 0; column < MonthModel.DAYS_PER_WEEK; ++column) {
+                int cell = row * MonthModel.DAYS_PER_WEEK + column;
+                drawCell(canvas, cell, painter.getCellLeft(getPaddingLeft(), column, unit), (int) top,
+                        painter.getCellRight(getPaddingLeft(), column, unit), (int) bottom);
+            }
+            drawBars(canvas, row, unit, (int) top);
+        }
+        StageTimer.end(StageTimer.STAGE_DRAW, start);
+    }
+
+    /**
+     * @param cell The cell index.
+     * @return Number of lines of the cell below the day number that are drawn (lanes and events), without the
+     * overflow line.
+     */
+    private int getVisibleLineCount(int cell) {
+        return GridPainter.getVisibleEventCount(model.getLaneCount(cell) + model.getEventCount(cell), capacity);
+    }
+
+    /**
+     * @param cell The cell index.
+     * @return Number of events of the cell (without the bars) that are drawn.
+     */
+    private int getVisibleEventCount(int cell) {
+        return Math.max(0, getVisibleLineCount(cell) - model.getLaneCount(cell));
+    }
+
+    /**
+     * Computes the capacity of the cells and measures how many characters of each drawn event title fit into its
+     * cell or bar.
+     *
+     * @param unit      Width of one column weight.
+     * @param rowHeight Height of a row.
+     */
+    private void measureTitles(float unit, float rowHeight) {
+        int cellCount = model.getRowCount() * MonthModel.DAYS_PER_WEEK;
+        capacity = painter.getCapacity(0, (int) rowHeight);
+
+        int total = 0;
+        for (int cell = 0; cell < cellCount; ++cell) {
+            titleOffsets[cell] = total;
+            total += getVisibleEventCount(cell);
+        }
+        titleOffsets[cellCount] = total;
+
+        if (total > titleEnds.length) {
+            titleEnds = new int[Math.max(total, 2 * titleEnds.length)];
+        }
+
+        for (int cell = 0; cell < cellCount; ++cell) {
+            measureCell(cell, unit);
+        }
+
+        if (model.getBarCount() > barTitleEnds.length) {
+            barTitleEnds = new int[Math.max(model.getBarCount(), 2 * barTitleEnds.length)];
+        }
+        for (int bar = 0; bar < model.getBarCount(); ++bar) {
+            int left = painter.getCellLeft(getPaddingLeft(), model.getBarFirstCell(bar) % MonthModel.DAYS_PER_WEEK, unit);
+            int right = painter.getCellRight(getPaddingLeft(), model.getBarLastCell(bar) % MonthModel.DAYS_PER_WEEK, unit);
+            barTitleEnds[bar] = painter.measureTitle(model.getBarTitle(bar), right - left);
+        }
+
+        titlesMeasured = true;
+    }
+
+    /**
+     * Measures the drawn event titles of a cell into the slots given by {@link #titleOffsets}.
+     *
+     * @param cell The cell index.
+     * @param unit Width of one column weight.
+     */
+    private void measureCell(int cell, float unit) {
+        int column = cell % MonthModel.DAYS_PER_WEEK;
+        float width = painter.getCellRight(getPaddingLeft(), column, unit) - painter.getCellLeft(getPaddingLeft(), column, unit);
+        for (int i = titleOffsets[cell]; i < titleOffsets[cell + 1]; ++i) {
+            titleEnds[i] = painter.measureTitle(model.getEventTitle(cell, i - titleOffsets[cell]), width);
+        }
+    }
+
+    /**
+     * Draws the day number and the events of a day that fit into the cell below its lanes, followed by the overflow
+     * line.
+     */
+    private void drawCell(Canvas canvas, int cell, int left, int top, int right, int bottom) {
+        painter.drawDay(canvas, model.getDayNumber(cell), model.getDayStyle(cell), left, top, right, bottom);
+
+        int lineHeight = (int) painter.getLineHeight();
+        int eventCount = model.getEventCount(cell);
+        int visibleCount = titleOffsets[cell + 1] - titleOffsets[cell];
+        int lineTop = top + (1 + model.getLaneCount(cell)) * lineHeight;
+        for (int i = 0; i < visibleCount; ++i) {
+            painter.drawEvent(canvas, model.getEventTitle(cell, i), titleEnds[titleOffsets[cell] + i],
+                    model.getEventColor(cell, i), model.isEventAllDay(cell, i), left, lineTop, right);
+            lineTop += lineHeight;
+        }
+
+        // hidden events and bars whose lane does not fit
+        int visibleLines = getVisibleLineCount(cell);
+        int hiddenCount = eventCount - visibleCount;
+        int row = cell / MonthModel.DAYS_PER_WEEK;
+        for (int bar = model.getFirstBar(row); bar < model.getEndBar(row); ++bar) {
+            if (model.getBarLane(bar) >= visibleLines && model.getBarFirstCell(bar) <= cell
+                    && model.getBarLastCell(bar) >= cell)
+                ++hiddenCount;
+        }
+        if (hiddenCount > 0 && capacity > 0) {
+            painter.drawMore(canvas, hiddenCount, left, top + (1 + visibleLines) * lineHeight);
+        }
+    }
+
+    /**
+     * Draws the bars of a row over its cells. A bar is interrupted at the cells that do not show its lane.
+     */
+    private void drawBars(Canvas canvas, int row, float unit, int top) {
+        int lineHeight = (int) painter.getLineHeight();
+        for (int bar = model.getFirstBar(row); bar < model.getEndBar(row); ++bar) {
+            int lane = model.getBarLane(bar);
+            int lastCell = model.getBarLastCell(bar);
+            int runStart = -1;
+            for (int cell = model.getBarFirstCell(bar); cell <= lastCell + 1; ++cell) {
+                boolean visible = cell <= lastCell && lane < getVisibleLineCount(cell);
+                if (visible && runStart < 0) {
+                    runStart = cell;
+                } else if (!visible && runStart >= 0) {
+                    drawBar(canvas, bar, runStart, cell - 1, unit, top + (1 + lane) * lineHeight);
+                    runStart = -1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Draws the cells firstCell - lastCell of a bar as one event line.
+     */
+    private void drawBar(Canvas canvas, int bar, int firstCell, int lastCell, float unit, int top) {
+        int left = painter.getCellLeft(getPaddingLeft(), firstCell % MonthModel.DAYS_PER_WEEK, unit);
+        int right = painter.getCellRight(getPaddingLeft(), lastCell % MonthModel.DAYS_PER_WEEK, unit);
+        String title = model.getBarTitle(bar);
+        // the title of an interrupted bar is measured for its part
+        int titleEnd = firstCell == model.getBarFirstCell(bar) && lastCell == model.getBarLastCell(bar)
+                ? barTitleEnds[bar] : painter.measureTitle(title, right - left);
+        painter.drawEvent(canvas, title, titleEnd, model.getBarColor(bar), model.isBarAllDay(bar), left, top, right);
+    }
+}
@@ -0,0 +1,372 @@
+package org.ludmann.minimalisticcalendargrid.app;
+
+import android.content.AsyncTaskLoader;
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
+import android.provider.CalendarContract;
+
+import org.ludmann.minimalisticcalendargrid.core.CalendarMath;
+import org.ludmann.minimalisticcalendargrid.core.DayBuckets;
+
+import java.util.TimeZone;
+
+/**
+ * Loads the events of a month and prepares the {@link MonthModel} in the background.
+ * <p/>
+ * Query and the assignment of the events to the days are done off the UI thread. Loaded months are put into the
+ * {@link MonthCache} and their instances into the {@link EventRepository} and the {@link InstanceDiskCache}; a month
+ * that is already cached is delivered without a query. Changes of the provider are handled by the
+ * {@link CalendarObserver} and the activity, not by the loader.
+ * <p/>
+ * There are two query modes (to compare them with the {@link StageTimer}): by default the instances are queried with
+ * millisecond bounds and all columns of {@link EventStore#PROJECTION}, so the day view is served from the
+ * {@link EventRepository}. With {@link #setQueryByDay(Context, boolean)} the instances are queried by Julian days with
+ * the columns the grid draws ({@link EventStore#GRID_PROJECTION}) and the day view queries
+ * its day itself. The Julian days of the provider are local days, so in both modes the cells (UTC days) are computed
+ * from begin and end.
+ * <p/>
+ * A load that is no longer needed (e. g. the user has navigated on) is cancelled with {@link #cancelLoad()}; the
+ * running query is aborted with a {@link CancellationSignal}.
+ *
+ * @author Cornelius Ludmann
+ */
+public class MonthLoader extends AsyncTaskLoader<MonthModel> {
+
+    private static final String PREFERENCES = "month_loader";
+    private static final String KEY_QUERY_BY_DAY = "query_by_day";
+
+    private final int month;
+    private final int year;
+    private MonthModel model;
+    /**
+     * Signal of the running query. Guarded by this.
+     */
+    private CancellationSignal cancellationSignal;
+
+    public MonthLoader(Context context, int month, int year) {
+        super(context);
+        this.month = month;
+        this.year = year;
+    }
+
+    /**
+     * Queries the events of the month and builds the model. Must not be called on the UI thread.
+     * <p/>
+     * The instances are read from the {@link InstanceDiskCache} if the month has been loaded before and the provider
+     * has not changed since then; otherwise they are queried and written into the disk cache.
+     *
+     * @param context         A context to query the provider.
+     * @param repository      The repository that gets the loaded instances.
+     * @param diskCache       The persistent cache of the instances.
+     * @param geometry        The geometry of the month.
+     * @param generation      The {@link CalendarObserver} generation before the query.
+     * @param byDay           True to query by Julian days (see {@link #setQueryByDay(Context, boolean)}).
+     * @param signal          Signal to cancel the load (may be null).
+     * @return The model of the month.
+     * @throws OperationCanceledException If the load has been cancelled.
+     */
+    public static MonthModel loadMonth(Context context, EventRepository repository,
+                                       InstanceDiskCache diskCache, GridGeometry geometry, int generation,
+                                       boolean byDay, CancellationSignal signal) {
+        EventStore events = loadEvents(context, diskCache, geometry, byDay, signal);
+        if (signal != null) {
+            signal.throwIfCanceled();
+        }
+
+        long start = StageTimer.begin(StageTimer.STAGE_BUCKET);
+        DayBuckets buckets = events.buildDayBuckets(geometry.getCellStart(0), MonthModel.MAX_ROWS * MonthModel.DAYS_PER_WEEK);
+        StageTimer.end(StageTimer.STAGE_BUCKET, start);
+        if (!byDay) {
+            // the store of the query by day lacks the columns of the day view
+            repository.put(geometry, generation, events, buckets);
+        }
+
+        start = StageTimer.begin(StageTimer.STAGE_MODEL);
+        MonthModel model = buildModel(events, buckets, geometry, generation);
+        StageTimer.end(StageTimer.STAGE_MODEL, start);
+        return model;
+    }
+
+    /**
+     * Reads the instances of the visible rows of a month from the {@link InstanceDiskCache} or, if the month is not
+     * cached, queries them and writes them into the disk cache. Must not be called on the UI thread.
+     *
+     * @param context   A context to query the provider.
+     * @param diskCache The persistent cache of the instances.
+     * @param geometry  The geometry of the month.
+     * @param byDay     True to query by Julian days (see {@link #setQueryByDay(Context, boolean)}).
+     * @param signal    Signal to cancel the query (may be null).
+     * @return The instances.
+     */
+    static EventStore loadEvents(Context context, InstanceDiskCache diskCache, GridGeometry geometry, boolean byDay,
+                                 CancellationSignal signal) {
+        long start = StageTimer.begin(StageTimer.STAGE_DISK);
+        EventStore events = diskCache.get(geometry, byDay);
+        StageTimer.end(StageTimer.STAGE_DISK, start);
+        if (events == null) {
+            int diskGeneration = diskCache.getGeneration();
+            ContentResolver contentResolver = context.getContentResolver();
+            InstanceSource source = InstanceSource.getInstance(context);
+            String[] selectionArgs = CalendarFilter.getInstance(context).getSelectionArgs();
+            events = byDay
+                    ? queryMonthByDay(contentResolver, source.getInstancesByDayUri(), selectionArgs, geometry, signal)
+                    : queryMonth(contentResolver, source.getInstancesUri(), selectionArgs, geometry, signal);
+            diskCache.put(geometry, diskGeneration, byDay, events);
+        }
+        return events;
+    }
+
+    /**
+     * @param contentResolver The content resolver for the calendar provider.
+     * @param instancesUri    The base of the instance URI (see {@link InstanceSource#getInstancesUri()}).
+     * @param selectionArgs   The chosen calendars (see {@link CalendarFilter#getSelectionArgs()}).
+     * @param geometry        The geometry of the month.
+     * @param signal          Signal to cancel the query (may be null).
+     * @return The instances of the visible rows of the month.
+     */
+    private static EventStore queryMonth(ContentResolver contentResolver, Uri instancesUri, String[] selectionArgs,
+                                         GridGeometry geometry, CancellationSignal signal) {
+        Uri.Builder builder = instancesUri.buildUpon();
+        ContentUris.appendId(builder, geometry.getCellStart(0));
+        ContentUris.appendId(builder, geometry.getGridEnd() - 1);
+        long start = StageTimer.begin(StageTimer.STAGE_QUERY);
+        Cursor cursor = contentResolver.query(builder.build(), EventStore.PROJECTION,
+                CalendarFilter.getSelection(selectionArgs), selectionArgs, CalendarContract.Instances.BEGIN + " ASC",
+                signal);
+        StageTimer.end(StageTimer.STAGE_QUERY, start);
+        return readEvents(cursor);
+    }
+
+    /**
+     * @param contentResolver The content resolver for the calendar provider.
+     * @param instancesUri    The base of the instance URI (see {@link InstanceSource#getInstancesByDayUri()}).
+     * @param selectionArgs   The chosen calendars (see {@link CalendarFilter#getSelectionArgs()}).
+     * @param geometry        The geometry of the month.
+     * @param signal          Signal to cancel the query (may be null).
+     * @return The instances of the visible rows of the month (and of the days next to them) with the columns of
+     * {@link EventStore#GRID_PROJECTION}.
+     */
+    private static EventStore queryMonthByDay(ContentResolver contentResolver, Uri instancesUri,
+                                              String[] selectionArgs, GridGeometry geometry,
+                                              CancellationSignal signal) {
+        // the days of the query are local days: one more day on each side covers the UTC days of the grid in every
+        // time zone, the buckets skip the instances outside of the grid
+        int firstDay = (int) geometry.getFirstDay() + CalendarMath.JULIAN_DAY_OF_EPOCH;
+        Uri.Builder builder = instancesUri.buildUpon();
+        ContentUris.appendId(builder, firstDay - 1);
+        ContentUris.appendId(builder, firstDay + geometry.getRowCount() * MonthModel.DAYS_PER_WEEK);
+        long start = StageTimer.begin(StageTimer.STAGE_QUERY);
+        Cursor cursor = contentResolver.query(builder.build(), EventStore.GRID_PROJECTION,
+                CalendarFilter.getSelection(selectionArgs), selectionArgs, CalendarContract.Instances.BEGIN + " ASC",
+                signal);
+        StageTimer.end(StageTimer.STAGE_QUERY, start);
+        return readEvents(cursor);
+    }
+
+    /**
+     * Reads and closes the cursor.
+     */
+    private static EventStore readEvents(Cursor cursor) {
+        try {
+            long start = StageTimer.begin(StageTimer.STAGE_PARSE);
+            EventStore events = EventStore.fromCursor(cursor);
+            StageTimer.end(StageTimer.STAGE_PARSE, start);
+            return events;
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+
+    /**
+     * Copies the events of each day out of the store, all-day events first; events that cover more than one day are
+     * copied once (see {@link MonthModel}).
+     *
+     * @param events     All events of the month.
+     * @param buckets    The assignment of the events to the cells.
+     * @param geometry   The geometry of the month.
+     * @param generation The {@link CalendarObserver} generation before the query.
+     * @return The model of the month.
+     */
+    private static MonthModel buildModel(EventStore events, DayBuckets buckets, GridGeometry geometry, int generation) {
+        int cellCount = MonthModel.MAX_ROWS * MonthModel.DAYS_PER_WEEK;
+        int visibleCells = geometry.getRowCount() * MonthModel.DAYS_PER_WEEK;
+
+        // events that cover more than one visible day become bars, all-day events first
+        int multiDayCount = 0;
+        for (int position = 0; position < events.size(); ++position) {
+            if (isMultiDay(buckets, position, visibleCells))
+                ++multiDayCount;
+        }
+        int[] firstCells = new int[multiDayCount];
+        int[] lastCells = new int[multiDayCount];
+        String[] multiDayTitles = new String[multiDayCount];
+        int[] multiDayColors = new int[multiDayCount];
+        boolean[] multiDayAllDay = new boolean[multiDayCount];
+        int multiDay = 0;
+        for (int pass = 0; pass < 2; ++pass) {
+            for (int position = 0; position < events.size(); ++position) {
+                if (!isMultiDay(buckets, position, visibleCells) || events.isAllDay(position) != (pass == 0))
+                    continue;
+                firstCells[multiDay] = buckets.getFirstCell(position);
+                lastCells[multiDay] = Math.min(buckets.getLastCell(position), visibleCells - 1);
+                multiDayTitles[multiDay] = events.getTitle(position);
+                multiDayColors[multiDay] = events.getColor(position);
+                multiDayAllDay[multiDay] = pass == 0;
+                ++multiDay;
+            }
+        }
+
+        String[][] titles = new String[cellCount][];
+        int[][] colors = new int[cellCount][];
+        boolean[][] allDay = new boolean[cellCount][];
+
+        for (int cell = 0; cell < cellCount; ++cell) {
+            // cells of hidden rows are empty
+            int count = 0;
+            for (int i = 0; cell < visibleCells && i < buckets.getCount(cell); ++i) {
+                if (!isMultiDay(buckets, buckets.getPosition(cell, i), visibleCells))
+                    ++count;
+            }
+            titles[cell] = new String[count];
+            colors[cell] = new int[count];
+            allDay[cell] = new boolean[count];
+            // all-day events first, the others by start (the order of the store)
+            int rank = 0;
+            for (int pass = 0; pass < 2 && count > 0; ++pass) {
+                for (int i = 0; i < buckets.getCount(cell); ++i) {
+                    int position = buckets.getPosition(cell, i);
+                    if (isMultiDay(buckets, position, visibleCells) || events.isAllDay(position) != (pass == 0))
+                        continue;
+                    titles[cell][rank] = events.getTitle(position);
+                    colors[cell][rank] = events.getColor(position);
+                    allDay[cell][rank] = pass == 0;
+                    ++rank;
+                }
+            }
+        }
+
+        return new MonthModel(generation, geometry, getTodayCell(geometry), titles, colors, allDay, firstCells,
+                lastCells, multiDayTitles, multiDayColors, multiDayAllDay);
+    }
+
+    /**
+     * @return True if the event covers more than one of the visible cells.
+     */
+    private static boolean isMultiDay(DayBuckets buckets, int position, int visibleCells) {
+        return buckets.getFirstCell(position) < visibleCells
+                && Math.min(buckets.getLastCell(position), visibleCells - 1) > buckets.getFirstCell(position);
+    }
+
+    /**
+     * @param geometry The geometry of the month.
+     * @return The cell of the current day or -1 if the current day is not a day of the month.
+     */
+    static int getTodayCell(GridGeometry geometry) {
+        int visibleCells = geometry.getRowCount() * MonthModel.DAYS_PER_WEEK;
+        long today = CalendarMath.getEpochDay(System.currentTimeMillis(), TimeZone.getDefault());
+        int todayCell = (int) (today - geometry.getFirstDay());
+        if (todayCell < 0 || todayCell >= visibleCells || geometry.getDayStyle(todayCell) == MonthModel.DAY_STYLE_LAST_NEXT_MONTH)
+            todayCell = -1;
+        return todayCell;
+    }
+
+    /**
+     * @param context A context to read the preferences.
+     * @return True if the months are queried by Julian days.
+     */
+    public static boolean isQueryByDay(Context context) {
+        return getPreferences(context).getBoolean(KEY_QUERY_BY_DAY,
+                context.getResources().getBoolean(R.bool.query_by_day));
+    }
+
+    /**
+     * Selects the query mode of the following loads. Loaded months should be evicted from the {@link MonthCache}.
+     *
+     * @param context A context to write the preferences.
+     * @param byDay   True to query by Julian days.
+     */
+    public static void setQueryByDay(Context context, boolean byDay) {
+        getPreferences(context).edit().putBoolean(KEY_QUERY_BY_DAY, byDay).apply();
+    }
+
+    private static SharedPreferences getPreferences(Context context) {
+        return context.getApplicationContext().getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE);
+    }
+
+    @Override
+    public MonthModel loadInBackground() {
+        synchronized (this) {
+            if (isLoadInBackgroundCanceled()) {
+                throw new OperationCanceledException();
+            }
+            cancellationSignal = new CancellationSignal();
+        }
+        try {
+            int generation = CalendarObserver.getInstance(getContext()).getGeneration();
+            GridGeometry geometry = GridGeometryCache.getInstance(getContext()).get(month, year);
+            MonthModel model = loadMonth(getContext(), EventRepository.getInstance(getContext()),
+                    InstanceDiskCache.getInstance(getContext()), geometry, generation, isQueryByDay(getContext()),
+                    cancellationSignal);
+            MonthCache.getInstance(getContext()).put(model);
+            return model;
+        } finally {
+            synchronized (this) {
+                cancellationSignal = null;
+            }
+        }
+    }
+
+    @Override
+    public void cancelLoadInBackground() {
+        super.cancelLoadInBackground();
+        synchronized (this) {
+            if (cancellationSignal != null) {
+                cancellationSignal.cancel();
+            }
+        }
+    }
+
+    @Override
+    public void deliverResult(MonthModel model) {
+        if (isReset()) {
+            return;
+        }
+        this.model = model;
+        if (isStarted()) {
+            super.deliverResult(model);
+        }
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (model == null) {
+            model = MonthCache.getInstance(getContext()).get(month, year);
+        }
+        if (model != null) {
+            deliverResult(model);
+        }
+        if (takeContentChanged() || model == null) {
+            forceLoad();
+        }
+    }
+
+    @Override
+    protected void onStopLoading() {
+        cancelLoad();
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        onStopLoading();
+        model = null;
+    }
+}
@@ -0,0 +1,322 @@
+package org.ludmann.minimalisticcalendargrid.app;
+
+import org.ludmann.minimalisticcalendargrid.core.DayBuckets;
+import org.ludmann.minimalisticcalendargrid.core.MonthGrid;
+import org.ludmann.minimalisticcalendargrid.core.WeekLanes;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Immutable, ready-to-bind content of the month grid.
+ * <p/>
+ * All strings, colors and styles are prepared in the background by {@link MonthLoader}, so the UI thread only has to
+ * draw them. The labels and boundaries of the days come from the shared {@link GridGeometry} of the month.
+ * <p/>
+ * Events that cover more than one day of the grid are not part of the events of the cells; they are bars with a lane
+ * (see {@link WeekLanes}), one per week row they touch. The lanes are the first lines of a cell, the events of the day
+ * follow below the lanes in use at the cell.
+ *
+ * @author Cornelius Ludmann
+ */
+public class MonthModel {
+
+    /**
+     * A normal day of the displayed month.
+     */
+    public static final int DAY_STYLE_NORMAL = 0;
+    /**
+     * Saturday or sunday of the displayed month.
+     */
+    public static final int DAY_STYLE_WEEKEND = 1;
+    /**
+     * A day of the previous or the next month.
+     */
+    public static final int DAY_STYLE_LAST_NEXT_MONTH = 2;
+    /**
+     * The current day.
+     */
+    public static final int DAY_STYLE_NOW = 3;
+
+    /**
+     * Number of cells per row.
+     */
+    public static final int DAYS_PER_WEEK = MonthGrid.DAYS_PER_WEEK;
+    /**
+     * Maximum number of rows of the grid.
+     */
+    public static final int MAX_ROWS = 6;
+
+    private final int generation;
+    private final GridGeometry geometry;
+    /**
+     * The cell of the current day or -1 if the current day is not in the displayed month.
+     */
+    private final int todayCell;
+    private final String[][] titles;
+    private final int[][] colors;
+    private final boolean[][] allDay;
+    /**
+     * The multi-day events (first and last visible cell, title, color, all-day flag), all-day events first.
+     */
+    private final int[] multiDayFirstCells;
+    private final int[] multiDayLastCells;
+    private final String[] multiDayTitles;
+    private final int[] multiDayColors;
+    private final boolean[] multiDayAllDay;
+    private final WeekLanes lanes;
+
+    MonthModel(int generation, GridGeometry geometry, int todayCell, String[][] titles, int[][] colors,
+               boolean[][] allDay, int[] multiDayFirstCells, int[] multiDayLastCells, String[] multiDayTitles,
+               int[] multiDayColors, boolean[] multiDayAllDay) {
+        this.generation = generation;
+        this.geometry = geometry;
+        this.todayCell = todayCell;
+        this.titles = titles;
+        this.colors = colors;
+        this.allDay = allDay;
+        this.multiDayFirstCells = multiDayFirstCells;
+        this.multiDayLastCells = multiDayLastCells;
+        this.multiDayTitles = multiDayTitles;
+        this.multiDayColors = multiDayColors;
+        this.multiDayAllDay = multiDayAllDay;
+        int visibleCells = geometry.getRowCount() * DAYS_PER_WEEK;
+        lanes = WeekLanes.build(DayBuckets.buildFromDays(multiDayFirstCells, multiDayLastCells,
+                multiDayFirstCells.length, 0, visibleCells), geometry.getRowCount());
+    }
+
+    /**
+     * @param geometry  The geometry of the month.
+     * @param todayCell The cell of the current day or -1.
+     * @return A month without events (generation -1), shown while the events are loading.
+     */
+    static MonthModel empty(GridGeometry geometry, int todayCell) {
+        int cellCount = MAX_ROWS * DAYS_PER_WEEK;
+        String[][] titles = new String[cellCount][];
+        int[][] colors = new int[cellCount][];
+        boolean[][] allDay = new boolean[cellCount][];
+        // the cells share the empty arrays
+        Arrays.fill(titles, new String[0]);
+        Arrays.fill(colors, new int[0]);
+        Arrays.fill(allDay, new boolean[0]);
+        return new MonthModel(-1, geometry, todayCell, titles, colors, allDay, new int[0], new int[0], new String[0],
+                new int[0], new boolean[0]);
+    }
+
+    /**
+     * @return The {@link CalendarObserver} generation at the start of the query.
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
+    public int getMonth() {
+        return geometry.getMonth();
+    }
+
+    public int getYear() {
+        return geometry.getYear();
+    }
+
+    /**
+     * @return The (shared) geometry of the grid.
+     */
+    public GridGeometry getGeometry() {
+        return geometry;
+    }
+
+    /**
+     * @return Timestamp of the first cell (00:00 UTC).
+     */
+    public long getGridStart() {
+        return geometry.getCellStart(0);
+    }
+
+    /**
+     * @return The number of visible rows (4 - 6).
+     */
+    public int getRowCount() {
+        return geometry.getRowCount();
+    }
+
+    /**
+     * @param row The row index.
+     * @return The label of the calendar week.
+     */
+    public String getWeekNumber(int row) {
+        return geometry.getWeekNumber(row);
+    }
+
+    /**
+     * @param cell The cell index (row * 7 + column).
+     * @return The label of the day of the month.
+     */
+    public String getDayNumber(int cell) {
+        return geometry.getDayNumber(cell);
+    }
+
+    /**
+     * @param cell The cell index (row * 7 + column).
+     * @return The day of the cell (00:00 UTC).
+     */
+    public Calendar getDay(int cell) {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        calendar.setTimeInMillis(geometry.getCellStart(cell));
+        return calendar;
+    }
+
+    /**
+     * @param cell The cell index (row * 7 + column).
+     * @return One of the DAY_STYLE_* constants.
+     */
+    public int getDayStyle(int cell) {
+        return cell == todayCell ? DAY_STYLE_NOW : geometry.getDayStyle(cell);
+    }
+
+    /**
+     * @param cell The cell index (row * 7 + column).
+     * @return The number of events of the day.
+     */
+    public int getEventCount(int cell) {
+        return titles[cell].length;
+    }
+
+    public String getEventTitle(int cell, int index) {
+        return titles[cell][index];
+    }
+
+    public int getEventColor(int cell, int index) {
+        return colors[cell][index];
+    }
+
+    public boolean isEventAllDay(int cell, int index) {
+        return allDay[cell][index];
+    }
+
+    /**
+     * @return Number of events that cover more than one visible day.
+     */
+    public int getMultiDayCount() {
+        return multiDayTitles.length;
+    }
+
+    public int getMultiDayFirstCell(int index) {
+        return multiDayFirstCells[index];
+    }
+
+    public int getMultiDayLastCell(int index) {
+        return multiDayLastCells[index];
+    }
+
+    public String getMultiDayTitle(int index) {
+        return multiDayTitles[index];
+    }
+
+    public int getMultiDayColor(int index) {
+        return multiDayColors[index];
+    }
+
+    public boolean isMultiDayAllDay(int index) {
+        return multiDayAllDay[index];
+    }
+
+    /**
+     * @param cell The cell index (row * 7 + column).
+     * @return Number of lanes in use at the cell; the events of the cell are drawn below.
+     */
+    public int getLaneCount(int cell) {
+        return lanes.getLaneCount(cell);
+    }
+
+    /**
+     * @param row The row index.
+     * @return Index of the first bar of the row.
+     */
+    public int getFirstBar(int row) {
+        return lanes.getFirstBar(row);
+    }
+
+    /**
+     * @param row The row index.
+     * @return Index after the last bar of the row.
+     */
+    public int getEndBar(int row) {
+        return lanes.getEndBar(row);
+    }
+
+    /**
+     * @return Number of bars of all rows.
+     */
+    public int getBarCount() {
+        return lanes.getBarCount();
+    }
+
+    public int getBarFirstCell(int bar) {
+        return lanes.getFirstCell(bar);
+    }
+
+    /**
+     * @param bar The bar index.
+     * @return The last cell of the bar (in the same row as the first cell).
+     */
+    public int getBarLastCell(int bar) {
+        return lanes.getLastCell(bar);
+    }
+
+    public int getBarLane(int bar) {
+        return lanes.getLane(bar);
+    }
+
+    public String getBarTitle(int bar) {
+        return multiDayTitles[lanes.getPosition(bar)];
+    }
+
+    public int getBarColor(int bar) {
+        return multiDayColors[lanes.getPosition(bar)];
+    }
+
+    public boolean isBarAllDay(int bar) {
+        return multiDayAllDay[lanes.getPosition(bar)];
+    }
+
+    /**
+     * @param other Another month.
+     * @return True if both months have the same days in the same rows (e. g. a reload of the month).
+     */
+    public boolean hasSameGrid(MonthModel other) {
+        return getGridStart() == other.getGridStart() && getRowCount() == other.getRowCount();
+    }
+
+    /**
+     * @param other Another month with the same grid (see {@link #hasSameGrid(MonthModel)}).
+     * @param cell  The cell index (row * 7 + column).
+     * @return True if the cell looks the same in both months (day style and events).
+     */
+    public boolean hasSameCell(MonthModel other, int cell) {
+        return getDayStyle(cell) == other.getDayStyle(cell) && getLaneCount(cell) == other.getLaneCount(cell)
+                && Arrays.equals(titles[cell], other.titles[cell]) && Arrays.equals(colors[cell], other.colors[cell])
+                && Arrays.equals(allDay[cell], other.allDay[cell]);
+    }
+
+    /**
+     * @param other Another month with the same grid (see {@link #hasSameGrid(MonthModel)}).
+     * @param row   The row index.
+     * @return True if the row has the same bars in both months.
+     */
+    public boolean hasSameBars(MonthModel other, int row) {
+        int first = getFirstBar(row);
+        int otherFirst = other.getFirstBar(row);
+        if (getEndBar(row) - first != other.getEndBar(row) - otherFirst)
+            return false;
+        for (int bar = first, otherBar = otherFirst; bar < getEndBar(row); ++bar, ++otherBar) {
+            if (getBarFirstCell(bar) != other.getBarFirstCell(otherBar) || getBarLastCell(bar) != other.getBarLastCell(otherBar)
+                    || getBarLane(bar) != other.getBarLane(otherBar) || getBarColor(bar) != other.getBarColor(otherBar)
+                    || isBarAllDay(bar) != other.isBarAllDay(otherBar)
+                    || !(getBarTitle(bar) == null ? other.getBarTitle(otherBar) == null
+                    : getBarTitle(bar).equals(other.getBarTitle(otherBar))))
+                return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,229 @@
+package org.ludmann.minimalisticcalendargrid.app;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Binary snapshot of the last loaded current month in the app's files directory.
+ * <p/>
+ * On a cold start the snapshot is drawn before the first query has finished; the loaded month replaces it. The file
+ * keeps the titles (as string table), colors, all-day flags and the cells of the events; the lanes of the multi-day
+ * events are assigned again when the snapshot is read. The labels of the days come
+ * from the {@link GridGeometry}, so a snapshot is discarded if the grid start, the number of rows or the time zone
+ * differ from the current settings.
+ * <p/>
+ * A restored month has the generation -1, so it is never taken for a loaded month (e. g. by the {@link MonthCache}).
+ *
+ * @author Cornelius Ludmann
+ */
+public final class MonthSnapshot {
+
+    private static final String FILE_NAME = "month_snapshot.bin";
+    /**
+     * Changed on every change of the file format.
+     */
+    private static final int VERSION = 3;
+    /**
+     * The smallest sizes of a string (its length), an event of a cell and a multi-day event in the file.
+     */
+    private static final int MIN_STRING_SIZE = 2;
+    private static final int MIN_EVENT_SIZE = 4 + 4 + 1;
+    private static final int MIN_MULTI_DAY_SIZE = 4 + 4 + 1 + 2 + 2;
+
+    private MonthSnapshot() {
+
+    }
+
+    /**
+     * Writes the month into the snapshot file. Should not be called on the UI thread.
+     *
+     * @param context A context to find the files directory.
+     * @param model   The loaded month.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void write(Context context, MonthModel model) throws IOException {
+        int visibleCells = model.getRowCount() * MonthModel.DAYS_PER_WEEK;
+
+        // string table: recurring events share their title
+        List<String> strings = new ArrayList<String>();
+        Map<String, Integer> stringIndex = new HashMap<String, Integer>();
+        int[][] titles = new int[visibleCells][];
+        for (int cell = 0; cell < visibleCells; ++cell) {
+            titles[cell] = new int[model.getEventCount(cell)];
+            for (int i = 0; i < titles[cell].length; ++i) {
+                titles[cell][i] = getStringIndex(model.getEventTitle(cell, i), strings, stringIndex);
+            }
+        }
+        int[] multiDayTitles = new int[model.getMultiDayCount()];
+        for (int i = 0; i < multiDayTitles.length; ++i) {
+            multiDayTitles[i] = getStringIndex(model.getMultiDayTitle(i), strings, stringIndex);
+        }
+
+        // write into a temporary file and rename it, so a crash never leaves a broken snapshot
+        File file = new File(context.getFilesDir(), FILE_NAME);
+        File tmp = new File(context.getFilesDir(), FILE_NAME + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+        try {
+            out.writeInt(VERSION);
+            out.writeInt(model.getYear());
+            out.writeInt(model.getMonth());
+            out.writeLong(model.getGridStart());
+            out.writeInt(model.getRowCount());
+            out.writeUTF(TimeZone.getDefault().getID());
+
+            out.writeInt(strings.size());
+            for (String string : strings) {
+                out.writeUTF(string);
+            }
+            for (int cell = 0; cell < visibleCells; ++cell) {
+                out.writeInt(titles[cell].length);
+                for (int i = 0; i < titles[cell].length; ++i) {
+                    out.writeInt(titles[cell][i]);
+                    out.writeInt(model.getEventColor(cell, i));
+                    out.writeBoolean(model.isEventAllDay(cell, i));
+                }
+            }
+            // in the order of the model, so the lanes are assigned like before
+            out.writeInt(multiDayTitles.length);
+            for (int i = 0; i < multiDayTitles.length; ++i) {
+                out.writeInt(multiDayTitles[i]);
+                out.writeInt(model.getMultiDayColor(i));
+                out.writeBoolean(model.isMultiDayAllDay(i));
+                out.writeShort(model.getMultiDayFirstCell(i));
+                out.writeShort(model.getMultiDayLastCell(i));
+            }
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Cannot rename " + tmp);
+        }
+    }
+
+    /**
+     * @return The index of the string in the string table (added if it is new).
+     */
+    private static int getStringIndex(String string, List<String> strings, Map<String, Integer> stringIndex) {
+        if (string == null)
+            string = "";
+        Integer index = stringIndex.get(string);
+        if (index == null) {
+            index = strings.size();
+            strings.add(string);
+            stringIndex.put(string, index);
+        }
+        return index;
+    }
+
+    /**
+     * Reads the snapshot of a month.
+     *
+     * @param context A context to find the files directory.
+     * @param month   The month number.
+     * @param year    The year.
+     * @return The month (generation -1) or null if there is no valid snapshot of the month. A broken file is deleted.
+     */
+    public static MonthModel read(Context context, int month, int year) {
+        File file = new File(context.getFilesDir(), FILE_NAME);
+        DataInputStream in;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+        // no count of the file can be larger than the file allows, so a broken count never allocates much memory
+        long length = file.length();
+        try {
+            if (in.readInt() != VERSION || in.readInt() != year || in.readInt() != month)
+                return null;
+            GridGeometry geometry = GridGeometryCache.getInstance(context).get(month, year);
+            if (in.readLong() != geometry.getCellStart(0) || in.readInt() != geometry.getRowCount()
+                    || !in.readUTF().equals(TimeZone.getDefault().getID()))
+                return null;
+
+            String[] strings = new String[readCount(in, length / MIN_STRING_SIZE)];
+            for (int i = 0; i < strings.length; ++i) {
+                strings[i] = in.readUTF();
+            }
+
+            int cellCount = MonthModel.MAX_ROWS * MonthModel.DAYS_PER_WEEK;
+            int visibleCells = geometry.getRowCount() * MonthModel.DAYS_PER_WEEK;
+            String[][] titles = new String[cellCount][];
+            int[][] colors = new int[cellCount][];
+            boolean[][] allDay = new boolean[cellCount][];
+            for (int cell = 0; cell < cellCount; ++cell) {
+                // cells of hidden rows are empty
+                int count = cell < visibleCells ? readCount(in, length / MIN_EVENT_SIZE) : 0;
+                titles[cell] = new String[count];
+                colors[cell] = new int[count];
+                allDay[cell] = new boolean[count];
+                for (int i = 0; i < count; ++i) {
+                    titles[cell][i] = strings[in.readInt()];
+                    colors[cell][i] = in.readInt();
+                    allDay[cell][i] = in.readBoolean();
+                }
+            }
+
+            int multiDayCount = readCount(in, length / MIN_MULTI_DAY_SIZE);
+            int[] firstCells = new int[multiDayCount];
+            int[] lastCells = new int[multiDayCount];
+            String[] multiDayTitles = new String[multiDayCount];
+            int[] multiDayColors = new int[multiDayCount];
+            boolean[] multiDayAllDay = new boolean[multiDayCount];
+            for (int i = 0; i < multiDayCount; ++i) {
+                multiDayTitles[i] = strings[in.readInt()];
+                multiDayColors[i] = in.readInt();
+                multiDayAllDay[i] = in.readBoolean();
+                firstCells[i] = in.readShort();
+                lastCells[i] = in.readShort();
+                if (firstCells[i] < 0 || firstCells[i] > lastCells[i] || lastCells[i] >= visibleCells)
+                    throw new IOException("Invalid cells " + firstCells[i] + " - " + lastCells[i]);
+            }
+            return new MonthModel(-1, geometry, MonthLoader.getTodayCell(geometry), titles, colors, allDay, firstCells,
+                    lastCells, multiDayTitles, multiDayColors, multiDayAllDay);
+        } catch (IOException e) {
+            // truncated or broken file: start without snapshot
+            Log.w("MonthSnapshot", "Cannot read " + file, e);
+            file.delete();
+            return null;
+        } catch (RuntimeException e) {
+            // broken string index (e. g. ArrayIndexOutOfBoundsException)
+            Log.w("MonthSnapshot", "Cannot read " + file, e);
+            file.delete();
+            return null;
+        } finally {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    /**
+     * @param max The largest valid count.
+     * @return The next int of the stream as count.
+     * @throws IOException If the count is negative or larger than max.
+     */
+    private static int readCount(DataInputStream in, long max) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > max)
+            throw new IOException("Invalid count " + count);
+        return count;
+    }
+}
@@ -0,0 +1,19 @@
+package org.ludmann.minimalisticcalendargrid.app;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+/**
+ * Counts up the stored {@link CalendarObserver} generation on every change of the calendar provider, also while the
+ * app is not running. The provider sends {@link Intent#ACTION_PROVIDER_CHANGED} after its data has changed.
+ *
+ * @author Cornelius Ludmann
+ */
+public class ProviderChangedReceiver extends BroadcastReceiver {
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        CalendarObserver.incrementStoredGeneration(context);
+    }
+}
@@ -0,0 +1,359 @@
+package org.ludmann.minimalisticcalendargrid.app;
+
+import android.content.Context;
+
+import org.ludmann.minimalisticcalendargrid.core.CalendarMath;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * In-memory inverted index of the titles and locations of the instances of loaded months.
+ * <p/>
+ * Each month (the instances that begin on one of its days) has a sorted array of the tokens of its titles and locations
+ * and, per token, the instances that contain it. The months are indexed by {@link #fill} in a background task that only
+ * runs while the search is open, from the same instances the loaders read (mostly from the {@link InstanceDiskCache});
+ * loading and showing a month never waits for the index. A search looks up every word of the query as a prefix, so it
+ * is fast enough to run on the UI thread on every keystroke.
+ * <p/>
+ * Only the months of the window of the last {@link #fill} (the displayed month and the months around it) are kept; the
+ * others are dropped when the window moves, so the index does not grow while the user browses.
+ * <p/>
+ * A month that was indexed before a change of the provider ({@link CalendarObserver} generation) is outdated: a search
+ * skips it, so deleted or changed instances are never found, and the next {@link #fill} indexes it again.
+ *
+ * @author Cornelius Ludmann
+ */
+public class SearchIndex {
+
+    /**
+     * Maximum number of results of a search.
+     */
+    private static final int MAX_RESULTS = 100;
+
+    private static SearchIndex instance;
+
+    private final CalendarObserver calendarObserver;
+    /**
+     * The indexed months by year * 12 + month. Guarded by this.
+     */
+    private final Map<Integer, MonthIndex> months = new HashMap<Integer, MonthIndex>();
+    /**
+     * The window of the kept months: center (year * 12 + month) and number of months before and after it; no limit
+     * before the first {@link #fill}. Guarded by this.
+     */
+    private int windowCenter;
+    private int windowRadius = -1;
+
+    private SearchIndex(CalendarObserver calendarObserver) {
+        this.calendarObserver = calendarObserver;
+    }
+
+    /**
+     * @param context A context to get the {@link CalendarObserver}.
+     * @return The process wide index.
+     */
+    public static synchronized SearchIndex getInstance(Context context) {
+        if (instance == null) {
+            instance = new SearchIndex(CalendarObserver.getInstance(context));
+        }
+        return instance;
+    }
+
+    /**
+     * Indexes the instances of a month that begin in the month; an older index of the month is replaced. A month
+     * outside of the window of the last {@link #fill} is not kept. Should not be called on the UI thread.
+     *
+     * @param geometry   The geometry of the month.
+     * @param generation The {@link CalendarObserver} generation before the query.
+     * @param events     The instances of the month (with titles and locations, see {@link EventStore#PROJECTION}).
+     */
+    private void put(GridGeometry geometry, int generation, EventStore events) {
+        long monthStart = CalendarMath.toEpochDay(geometry.getYear(), geometry.getMonth(), 1) * CalendarMath.DAY_IN_MILLIS;
+        long monthEnd = monthStart + CalendarMath.getLengthOfMonth(geometry.getYear(), geometry.getMonth())
+                * CalendarMath.DAY_IN_MILLIS;
+        int key = geometry.getYear() * 12 + geometry.getMonth();
+        MonthIndex index = MonthIndex.build(generation, events, monthStart, monthEnd);
+        synchronized (this) {
+            if (isInWindow(key)) {
+                months.put(key, index);
+            }
+        }
+    }
+
+    /**
+     * @return True if the month (year * 12 + month) is in the window of the last {@link #fill}. Must hold the lock.
+     */
+    private boolean isInWindow(int key) {
+        return windowRadius < 0 || Math.abs(key - windowCenter) <= windowRadius;
+    }
+
+    /**
+     * @param month The month number.
+     * @param year  The year.
+     * @return True if the month is indexed and the provider has not changed since then.
+     */
+    public synchronized boolean contains(int month, int year) {
+        MonthIndex index = months.get(year * 12 + month);
+        return index != null && index.generation == calendarObserver.getGeneration();
+    }
+
+    /**
+     * Removes all months, e. g. because other calendars are shown.
+     */
+    public synchronized void evictAll() {
+        months.clear();
+    }
+
+    /**
+     * Moves the window of the kept months to a month and indexes the months of the window that are not indexed yet, the
+     * nearest months first; the months outside of the window are dropped. Must not be called on the UI thread.
+     *
+     * @param context  A context to query the provider.
+     * @param month    The month number of the center.
+     * @param year     The year of the center.
+     * @param radius   Number of months before and after the center.
+     * @param listener Called (on the calling thread) after each indexed month; returns false to stop.
+     */
+    public void fill(Context context, int month, int year, int radius, OnMonthIndexedListener listener) {
+        GridGeometryCache geometries = GridGeometryCache.getInstance(context);
+        InstanceDiskCache diskCache = InstanceDiskCache.getInstance(context);
+        int center = year * 12 + month;
+        synchronized (this) {
+            windowCenter = center;
+            windowRadius = radius;
+            for (Iterator<Integer> keys = months.keySet().iterator(); keys.hasNext(); ) {
+                if (!isInWindow(keys.next())) {
+                    keys.remove();
+                }
+            }
+        }
+        for (int distance = 0; distance <= radius; ++distance) {
+            for (int key = center - distance; key <= center + distance; key += Math.max(1, 2 * distance)) {
+                if (contains(key % 12, key / 12))
+                    continue;
+                int generation = calendarObserver.getGeneration();
+                GridGeometry geometry = geometries.get(key % 12, key / 12);
+                // the store of the query by day lacks the locations; it has its own file in the disk cache
+                put(geometry, generation, MonthLoader.loadEvents(context, diskCache, geometry, false, null));
+                if (!listener.onMonthIndexed())
+                    return;
+            }
+        }
+    }
+
+    /**
+     * Finds the instances whose title or location contains a word that starts with each word of the query. Outdated
+     * months are skipped.
+     *
+     * @param query The query.
+     * @return The instances ordered by begin (at most {@link #MAX_RESULTS}).
+     */
+    public synchronized List<Result> search(String query) {
+        List<String> words = new ArrayList<String>();
+        tokenize(query, words);
+        List<Result> results = new ArrayList<Result>();
+        if (words.isEmpty())
+            return results;
+
+        int generation = calendarObserver.getGeneration();
+        for (MonthIndex index : months.values()) {
+            if (index.generation == generation) {
+                index.search(words, results);
+            }
+        }
+        Collections.sort(results, new Comparator<Result>() {
+            @Override
+            public int compare(Result lhs, Result rhs) {
+                return lhs.begin < rhs.begin ? -1 : (lhs.begin == rhs.begin ? 0 : 1);
+            }
+        });
+        return results.size() > MAX_RESULTS ? results.subList(0, MAX_RESULTS) : results;
+    }
+
+    /**
+     * Splits a text into lower case words of letters and digits.
+     */
+    private static void tokenize(String text, List<String> words) {
+        if (text == null)
+            return;
+        String lowerCase = text.toLowerCase(Locale.getDefault());
+        int start = -1;
+        for (int i = 0; i <= lowerCase.length(); ++i) {
+            boolean letterOrDigit = i < lowerCase.length() && Character.isLetterOrDigit(lowerCase.charAt(i));
+            if (letterOrDigit && start < 0) {
+                start = i;
+            } else if (!letterOrDigit && start >= 0) {
+                words.add(lowerCase.substring(start, i));
+                start = -1;
+            }
+        }
+    }
+
+    /**
+     * Listener for the progress of {@link #fill}.
+     */
+    public interface OnMonthIndexedListener {
+        /**
+         * @return False to stop indexing.
+         */
+        boolean onMonthIndexed();
+    }
+
+    /**
+     * A found instance.
+     */
+    public static final class Result {
+        private final String title;
+        private final String location;
+        private final long begin;
+        private final boolean allDay;
+
+        private Result(String title, String location, long begin, boolean allDay) {
+            this.title = title;
+            this.location = location;
+            this.begin = begin;
+            this.allDay = allDay;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        /**
+         * @return The location or null.
+         */
+        public String getLocation() {
+            return location;
+        }
+
+        public long getBegin() {
+            return begin;
+        }
+
+        public boolean isAllDay() {
+            return allDay;
+        }
+
+        /**
+         * @return The day of the instance in the grid (epoch day, the days of the grid are UTC days).
+         */
+        public long getDay() {
+            return CalendarMath.floorDiv(begin, CalendarMath.DAY_IN_MILLIS);
+        }
+    }
+
+    /**
+     * Immutable index of the instances of one month.
+     */
+    private static final class MonthIndex {
+        private final int generation;
+        private final String[] titles;
+        private final String[] locations;
+        private final long[] begins;
+        private final boolean[] allDay;
+        /**
+         * The sorted tokens and, for each token, the instances that contain it.
+         */
+        private final String[] tokens;
+        private final int[][] postings;
+
+        private MonthIndex(int generation, String[] titles, String[] locations, long[] begins, boolean[] allDay,
+                           String[] tokens, int[][] postings) {
+            this.generation = generation;
+            this.titles = titles;
+            this.locations = locations;
+            this.begins = begins;
+            this.allDay = allDay;
+            this.tokens = tokens;
+            this.postings = postings;
+        }
+
+        static MonthIndex build(int generation, EventStore events, long monthStart, long monthEnd) {
+            int count = 0;
+            for (int i = 0; i < events.size(); ++i) {
+                if (events.getBegin(i) >= monthStart && events.getBegin(i) < monthEnd)
+                    ++count;
+            }
+            String[] titles = new String[count];
+            String[] locations = new String[count];
+            long[] begins = new long[count];
+            boolean[] allDay = new boolean[count];
+
+            TreeMap<String, List<Integer>> tokenMap = new TreeMap<String, List<Integer>>();
+            List<String> words = new ArrayList<String>();
+            int entry = 0;
+            for (int i = 0; i < events.size(); ++i) {
+                if (events.getBegin(i) < monthStart || events.getBegin(i) >= monthEnd)
+                    continue;
+                titles[entry] = events.getTitle(i);
+                locations[entry] = events.getLocation(i);
+                begins[entry] = events.getBegin(i);
+                allDay[entry] = events.isAllDay(i);
+
+                words.clear();
+                tokenize(titles[entry], words);
+                tokenize(locations[entry], words);
+                for (String word : words) {
+                    List<Integer> posting = tokenMap.get(word);
+                    if (posting == null) {
+                        posting = new ArrayList<Integer>();
+                        tokenMap.put(word, posting);
+                    }
+                    // a word may occur twice in an instance
+                    if (posting.isEmpty() || posting.get(posting.size() - 1) != entry) {
+                        posting.add(entry);
+                    }
+                }
+                ++entry;
+            }
+
+            String[] tokens = tokenMap.keySet().toArray(new String[tokenMap.size()]);
+            int[][] postings = new int[tokens.length][];
+            for (int t = 0; t < tokens.length; ++t) {
+                List<Integer> posting = tokenMap.get(tokens[t]);
+                postings[t] = new int[posting.size()];
+                for (int i = 0; i < postings[t].length; ++i) {
+                    postings[t][i] = posting.get(i);
+                }
+            }
+            return new MonthIndex(generation, titles, locations, begins, allDay, tokens, postings);
+        }
+
+        /**
+         * Adds the instances that match all words (as prefixes) to the results.
+         */
+        void search(List<String> words, List<Result> results) {
+            BitSet matches = null;
+            for (String word : words) {
+                BitSet wordMatches = new BitSet(titles.length);
+                // the tokens with this prefix follow the insertion point
+                int t = Arrays.binarySearch(tokens, word);
+                for (t = t < 0 ? -t - 1 : t; t < tokens.length && tokens[t].startsWith(word); ++t) {
+                    for (int entry : postings[t]) {
+                        wordMatches.set(entry);
+                    }
+                }
+                if (matches == null) {
+                    matches = wordMatches;
+                } else {
+                    matches.and(wordMatches);
+                }
+                if (matches.isEmpty())
+                    return;
+            }
+            for (int entry = matches.nextSetBit(0); entry >= 0; entry = matches.nextSetBit(entry + 1)) {
+                results.add(new Result(titles[entry], locations[entry], begins[entry], allDay[entry]));
+            }
+        }
+    }
+}
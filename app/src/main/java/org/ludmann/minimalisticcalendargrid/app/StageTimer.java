@@ -0,0 +1,167 @@
+package org.ludmann.minimalisticcalendargrid.app;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.Trace;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Timing of the stages of a month switch.
+ * <p/>
+ * Each stage is wrapped in an {@link Trace} section (visible in systrace on API 18+) and its duration is put into a
+ * rolling window of the last {@link #WINDOW} samples, from which p50, p95 and max are computed. Thread safe: the
+ * loader stages run in the background, the view stages on the UI thread.
+ *
+ * @author Cornelius Ludmann
+ */
+public final class StageTimer {
+
+    /**
+     * Provider query (until the cursor is returned).
+     */
+    public static final int STAGE_QUERY = 0;
+    /**
+     * Reading the cursor into the {@link EventStore} (includes filling the cursor window).
+     */
+    public static final int STAGE_PARSE = 1;
+    /**
+     * Assignment of the instances to the cells.
+     */
+    public static final int STAGE_BUCKET = 2;
+    /**
+     * Copying the events into the {@link MonthModel}.
+     */
+    public static final int STAGE_MODEL = 3;
+    /**
+     * Measuring the event titles of a month in the {@link MonthGridView}.
+     */
+    public static final int STAGE_MEASURE = 4;
+    /**
+     * Drawing the {@link MonthGridView}.
+     */
+    public static final int STAGE_DRAW = 5;
+    /**
+     * From the request of a month (update()) until the model is delivered (onLoadFinished()).
+     */
+    public static final int STAGE_SWITCH = 6;
+    /**
+     * Lookup of the instances in the {@link InstanceDiskCache} (hit or miss).
+     */
+    public static final int STAGE_DISK = 7;
+
+    private static final String[] STAGE_NAMES = new String[]{
+            "query", "parse", "bucket", "model", "measure", "draw", "switch", "disk"
+    };
+
+    /**
+     * Number of samples per stage.
+     */
+    private static final int WINDOW = 128;
+
+    private static final long[][] samples = new long[STAGE_NAMES.length][WINDOW];
+    private static final int[] counts = new int[STAGE_NAMES.length];
+
+    private StageTimer() {
+
+    }
+
+    /**
+     * Starts a stage. Must be followed by {@link #end(int, long)} on the same thread.
+     *
+     * @param stage One of the STAGE_* constants.
+     * @return The start time to pass to {@link #end(int, long)}.
+     */
+    public static long begin(int stage) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.beginSection(STAGE_NAMES[stage]);
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Ends a stage and records its duration.
+     *
+     * @param stage One of the STAGE_* constants.
+     * @param start The result of {@link #begin(int)}.
+     */
+    public static void end(int stage, long start) {
+        long duration = System.nanoTime() - start;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.endSection();
+        }
+        record(stage, duration);
+    }
+
+    /**
+     * Records the duration of a stage that is not measured with {@link #begin(int)} (e. g. across threads).
+     *
+     * @param stage    One of the STAGE_* constants.
+     * @param duration The duration in nanoseconds.
+     */
+    public static synchronized void record(int stage, long duration) {
+        samples[stage][counts[stage] % WINDOW] = duration;
+        ++counts[stage];
+    }
+
+    /**
+     * Removes all samples, e. g. before a test.
+     */
+    public static synchronized void reset() {
+        Arrays.fill(counts, 0);
+    }
+
+    /**
+     * @return A table with the number of samples, p50, p95 and max (in ms) of each stage.
+     */
+    public static String getReport() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.US, "%-8s %5s %8s %8s %8s%n", "stage", "n", "p50", "p95", "max"));
+        long[] sorted = new long[WINDOW];
+        for (int stage = 0; stage < STAGE_NAMES.length; ++stage) {
+            int n;
+            synchronized (StageTimer.class) {
+                n = Math.min(counts[stage], WINDOW);
+                System.arraycopy(samples[stage], 0, sorted, 0, n);
+            }
+            Arrays.sort(sorted, 0, n);
+            report.append(String.format(Locale.US, "%-8s %5d %8.2f %8.2f %8.2f%n", STAGE_NAMES[stage], n,
+                    getPercentile(sorted, n, 50), getPercentile(sorted, n, 95), n == 0 ? 0 : sorted[n - 1] / 1e6));
+        }
+        return report.toString();
+    }
+
+    /**
+     * @return The percentile (nearest rank) in ms.
+     */
+    private static double getPercentile(long[] sorted, int n, int percentile) {
+        if (n == 0)
+            return 0;
+        int rank = (int) Math.ceil(percentile / 100.0 * n);
+        return sorted[Math.max(0, rank - 1)] / 1e6;
+    }
+
+    /**
+     * Writes the report into the app's files directory. Debug builds are debuggable, so the file can be pulled with
+     * {@code adb shell run-as} (the external directory would need a permission below API 19).
+     *
+     * @param context A context to find the directory.
+     * @return The written file.
+     * @throws IOException If the file cannot be written.
+     */
+    public static File dump(Context context) throws IOException {
+        File file = new File(context.getFilesDir(), "stage_timing.txt");
+        FileWriter writer = new FileWriter(file);
+        try {
+            writer.write(Build.MODEL + ", API " + Build.VERSION.SDK_INT + "\n");
+            writer.write(getReport());
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+}
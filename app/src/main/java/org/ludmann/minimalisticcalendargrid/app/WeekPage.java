@@ -0,0 +1,129 @@
+package org.ludmann.minimalisticcalendargrid.app;
+
+import android.content.ContentUris;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
+import android.provider.CalendarContract;
+
+import org.ludmann.minimalisticcalendargrid.core.CalendarMath;
+import org.ludmann.minimalisticcalendargrid.core.DayBuckets;
+
+/**
+ * Immutable events of a fixed number of consecutive weeks of the {@link WeeksView}.
+ *
+ * @author Cornelius Ludmann
+ */
+public class WeekPage {
+
+    /**
+     * Number of weeks of a page.
+     */
+    public static final int WEEKS = 8;
+
+    private final int index;
+    private final int generation;
+    private final String[][] titles;
+    private final int[][] colors;
+    private final boolean[][] allDay;
+
+    private WeekPage(int index, int generation, String[][] titles, int[][] colors, boolean[][] allDay) {
+        this.index = index;
+        this.generation = generation;
+        this.titles = titles;
+        this.colors = colors;
+        this.allDay = allDay;
+    }
+
+    /**
+     * Queries the events of the page. Must not be called on the UI thread.
+     *
+     * @param context         A context to query the provider.
+     * @param index           The index of the page.
+     * @param firstDay        The epoch day of the first day of the page.
+     * @param generation      The {@link CalendarObserver} generation before the query.
+     * @param signal          Signal to cancel the query, e. g. because the page has been evicted (may be null).
+     * @return The page.
+     * @throws OperationCanceledException If the load has been cancelled.
+     */
+    public static WeekPage load(Context context, int index, long firstDay, int generation, CancellationSignal signal) {
+        int cellCount = WEEKS * MonthModel.DAYS_PER_WEEK;
+        // due to the timestamp in the database are UTC: the days are UTC days
+        long pageStart = firstDay * CalendarMath.DAY_IN_MILLIS;
+
+        Uri.Builder builder = InstanceSource.getInstance(context).getInstancesUri().buildUpon();
+        ContentUris.appendId(builder, pageStart);
+        ContentUris.appendId(builder, pageStart + cellCount * CalendarMath.DAY_IN_MILLIS - 1);
+        String[] selectionArgs = CalendarFilter.getInstance(context).getSelectionArgs();
+        // the rows draw the columns of the month grid only
+        Cursor cursor = context.getContentResolver().query(builder.build(), EventStore.GRID_PROJECTION,
+                CalendarFilter.getSelection(selectionArgs), selectionArgs, CalendarContract.Instances.BEGIN + " ASC",
+                signal);
+        EventStore events;
+        try {
+            events = EventStore.fromCursor(cursor);
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+
+        DayBuckets buckets = events.buildDayBuckets(pageStart, cellCount);
+        String[][] titles = new String[cellCount][];
+        int[][] colors = new int[cellCount][];
+        boolean[][] allDay = new boolean[cellCount][];
+        for (int cell = 0; cell < cellCount; ++cell) {
+            int count = buckets.getCount(cell);
+            titles[cell] = new String[count];
+            colors[cell] = new int[count];
+            allDay[cell] = new boolean[count];
+            // all-day events first, the others by start (the order of the store)
+            int rank = 0;
+            for (int pass = 0; pass < 2; ++pass) {
+                for (int i = 0; i < count; ++i) {
+                    int position = buckets.getPosition(cell, i);
+                    if (events.isAllDay(position) != (pass == 0))
+                        continue;
+                    titles[cell][rank] = events.getTitle(position);
+                    colors[cell][rank] = events.getColor(position);
+                    allDay[cell][rank] = pass == 0;
+                    ++rank;
+                }
+            }
+        }
+        return new WeekPage(index, generation, titles, colors, allDay);
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return The {@link CalendarObserver} generation at the start of the query.
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @param cell The cell index within the page (week * 7 + column).
+     * @return The number of events of the day.
+     */
+    public int getEventCount(int cell) {
+        return titles[cell].length;
+    }
+
+    public String getEventTitle(int cell, int index) {
+        return titles[cell][index];
+    }
+
+    public int getEventColor(int cell, int index) {
+        return colors[cell][index];
+    }
+
+    public boolean isEventAllDay(int cell, int index) {
+        return allDay[cell][index];
+    }
+}
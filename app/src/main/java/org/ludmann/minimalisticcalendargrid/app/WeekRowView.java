@@ -0,0 +1,166 @@
+package org.ludmann.minimalisticcalendargrid.app;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.SoundEffectConstants;
+import android.view.View;
+
+import org.ludmann.minimalisticcalendargrid.core.CalendarMath;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Draws one week of the {@link WeeksView} like a row of the {@link MonthGridView}.
+ * <p/>
+ * The labels come from static tables and the events from a loaded {@link WeekPage}, so binding a row while scrolling
+ * does not allocate. Until the page is loaded only the days are drawn.
+ *
+ * @author Cornelius Ludmann
+ */
+public class WeekRowView extends View {
+
+    /**
+     * Number of event lines below the day number.
+     */
+    private static final int EVENT_LINES = 4;
+
+    private static final String[] NUMBERS = new String[54];
+
+    static {
+        for (int i = 0; i < NUMBERS.length; ++i) {
+            NUMBERS[i] = String.valueOf(i);
+        }
+    }
+
+    private final GridPainter painter;
+    private final float rowSpacing;
+    private final GestureDetector gestureDetector;
+
+    private long firstDay;
+    private int weekOfYear;
+    private long today;
+    private WeekPage page;
+    /**
+     * Index of the first cell of the week in the page.
+     */
+    private int pageCell;
+    private MonthGridView.OnDayClickListener onDayClickListener;
+
+    /**
+     * @param context The context.
+     * @param painter The painter (shared by all rows of the list).
+     */
+    public WeekRowView(Context context, GridPainter painter) {
+        super(context);
+
+        this.painter = painter;
+        rowSpacing = getResources().getDimension(R.dimen.grid_row_spacing);
+
+        gestureDetector = new GestureDetector(context, new GestureDetector.SimpleOnGestureListener() {
+            @Override
+            public boolean onDown(MotionEvent e) {
+                return true;
+            }
+
+            @Override
+            public boolean onSingleTapUp(MotionEvent e) {
+                float unit = getColumnUnit();
+                float column = (e.getX() - getPaddingLeft() - unit) / (2 * unit);
+                if (column < 0 || column >= MonthModel.DAYS_PER_WEEK || onDayClickListener == null)
+                    return false;
+                playSoundEffect(SoundEffectConstants.CLICK);
+                Calendar day = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+                day.setTimeInMillis((firstDay + (int) column) * CalendarMath.DAY_IN_MILLIS);
+                onDayClickListener.onDayClick(day);
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Sets the week to draw.
+     *
+     * @param firstDay   The epoch day of the first day of the week.
+     * @param weekOfYear The week number.
+     * @param today      The epoch day of the current day.
+     * @param page       The loaded page of the week or null if it is not loaded yet.
+     * @param pageCell   Index of the first cell of the week in the page.
+     */
+    public void setWeek(long firstDay, int weekOfYear, long today, WeekPage page, int pageCell) {
+        this.firstDay = firstDay;
+        this.weekOfYear = weekOfYear;
+        this.today = today;
+        this.page = page;
+        this.pageCell = pageCell;
+        invalidate();
+    }
+
+    public void setOnDayClickListener(MonthGridView.OnDayClickListener onDayClickListener) {
+        this.onDayClickListener = onDayClickListener;
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int height = (int) ((1 + EVENT_LINES) * painter.getLineHeight() + rowSpacing) + getPaddingTop() + getPaddingBottom();
+        setMeasuredDimension(getDefaultSize(getSuggestedMinimumWidth(), widthMeasureSpec), height);
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        return gestureDetector.onTouchEvent(event) || super.onTouchEvent(event);
+    }
+
+    /**
+     * @return Width of one column weight.
+     */
+    private float getColumnUnit() {
+        return (float) (getWidth() - getPaddingLeft() - getPaddingRight()) / GridPainter.COLUMN_WEIGHTS;
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+
+        float unit = getColumnUnit();
+        int top = getPaddingTop();
+        int bottom = (int) (getHeight() - getPaddingBottom() - rowSpacing);
+        int lineHeight = (int) painter.getLineHeight();
+
+        painter.drawWeekNumber(canvas, NUMBERS[weekOfYear], getPaddingLeft(), top);
+
+        for (int column = 0; column < MonthModel.DAYS_PER_WEEK; ++column) {
+            long day = firstDay + column;
+            int left = painter.getCellLeft(getPaddingLeft(), column, unit);
+            int right = painter.getCellRight(getPaddingLeft(), column, unit);
+
+            int dayStyle;
+            if (day == today) {
+                dayStyle = MonthModel.DAY_STYLE_NOW;
+            } else if (CalendarMath.isWeekend(day)) {
+                dayStyle = MonthModel.DAY_STYLE_WEEKEND;
+            } else {
+                dayStyle = MonthModel.DAY_STYLE_NORMAL;
+            }
+            painter.drawDay(canvas, NUMBERS[CalendarMath.getDayOfMonth(day)], dayStyle, left, top, right, bottom);
+
+            if (page == null)
+                continue;
+            int cell = pageCell + column;
+            int eventCount = page.getEventCount(cell);
+            int visibleCount = GridPainter.getVisibleEventCount(eventCount, painter.getCapacity(top, bottom));
+            int lineTop = top + lineHeight;
+            for (int i = 0; i < visibleCount; ++i) {
+                String title = page.getEventTitle(cell, i);
+                painter.drawEvent(canvas, title, painter.measureTitle(title, right - left), page.getEventColor(cell, i),
+                        page.isEventAllDay(cell, i), left, lineTop, right);
+                lineTop += lineHeight;
+            }
+            if (visibleCount < eventCount) {
+                painter.drawMore(canvas, eventCount - visibleCount, left, lineTop);
+            }
+        }
+    }
+}
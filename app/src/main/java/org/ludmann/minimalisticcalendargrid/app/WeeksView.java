@@ -0,0 +1,346 @@
+package org.ludmann.minimalisticcalendargrid.app;
+
+import android.app.Activity;
+import android.content.Intent;
+import android.os.AsyncTask;
+import android.os.Bundle;
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
+import android.util.SparseArray;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.AbsListView;
+import android.widget.BaseAdapter;
+import android.widget.ListView;
+import android.widget.TableRow;
+import android.widget.TextView;
+
+import org.ludmann.minimalisticcalendargrid.core.CalendarMath;
+import org.ludmann.minimalisticcalendargrid.core.MonthGrid;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Continuous, vertically scrolling list of weeks.
+ * <p/>
+ * The events are loaded in pages of {@link WeekPage#WEEKS} weeks: one query per page, not per row or scroll event.
+ * Only the pages around the visible rows are requested, and pages that are more than {@link #WINDOW_PAGES} pages away
+ * from the visible rows are evicted. While the list is flung no pages are requested; the pages of the rows that are
+ * visible when the list comes to rest are loaded then. The query of an evicted page is cancelled, so the loads of the
+ * visible pages do not wait for it.
+ *
+ * @author Cornelius Ludmann
+ */
+public class WeeksView extends Activity {
+
+    /**
+     * Intent extra: the month to show first.
+     */
+    public static final String EXTRA_MONTH = "month";
+    /**
+     * Intent extra: the year to show first.
+     */
+    public static final String EXTRA_YEAR = "year";
+
+    /**
+     * Number of pages that are kept on each side of the visible page.
+     */
+    private static final int WINDOW_PAGES = 3;
+    private static final int MIN_YEAR = 1900;
+    private static final int MAX_YEAR = 2100;
+
+    private MonthGrid grid;
+    /**
+     * The epoch day of the first day of the list.
+     */
+    private long firstDay;
+    private int weekCount;
+    private long today;
+    private String[] monthNames;
+    /**
+     * year * 12 + month of the title.
+     */
+    private int titleMonth = -1;
+
+    private ListView weeksList;
+    private WeeksAdapter adapter;
+    private GridPainter painter;
+    private final SparseArray<WeekPage> pages = new SparseArray<WeekPage>();
+    private final SparseArray<PageTask> pageTasks = new SparseArray<PageTask>();
+    private int scrollState = AbsListView.OnScrollListener.SCROLL_STATE_IDLE;
+    /**
+     * The page of the first visible row.
+     */
+    private int visiblePage;
+
+    /**
+     * Counts the changes of the calendar provider.
+     */
+    private CalendarObserver calendarObserver;
+    /**
+     * The {@link CalendarObserver} generation of the loaded pages.
+     */
+    private int requestedGeneration;
+    /**
+     * Reloads the pages if the calendar provider changes while the activity is in the foreground.
+     */
+    private final CalendarObserver.OnCalendarChangeListener calendarChangeListener = new CalendarObserver.OnCalendarChangeListener() {
+        @Override
+        public void onCalendarChange() {
+            reload();
+        }
+    };
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_weeks_view);
+
+        TableRow row = (TableRow) findViewById(R.id.weekday_names_row);
+        String[] weekdayNames = CalendarLabels.getWeekdayNames();
+        for (int i = 1; i < row.getChildCount(); ++i) {
+            ((TextView) row.getChildAt(i)).setText(weekdayNames[i - 1]);
+        }
+
+        monthNames = CalendarLabels.getMonthNames();
+        grid = CalendarLabels.getMonthGrid();
+        firstDay = grid.getFirstDay(MIN_YEAR, 0);
+        weekCount = (int) ((grid.getLastDay(MAX_YEAR, 11) - firstDay + 1) / MonthModel.DAYS_PER_WEEK);
+        today = CalendarMath.getEpochDay(System.currentTimeMillis(), TimeZone.getDefault());
+        painter = new GridPainter(this);
+        calendarObserver = CalendarObserver.getInstance(this);
+        requestedGeneration = calendarObserver.getGeneration();
+
+        adapter = new WeeksAdapter();
+        weeksList = (ListView) findViewById(R.id.weeks_list);
+        weeksList.setAdapter(adapter);
+        weeksList.setOnScrollListener(new AbsListView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(AbsListView view, int state) {
+                scrollState = state;
+                if (state != SCROLL_STATE_FLING) {
+                    requestVisiblePages();
+                }
+            }
+
+            @Override
+            public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+                updateTitle(firstVisibleItem);
+                int page = firstVisibleItem / WeekPage.WEEKS;
+                if (page != visiblePage) {
+                    visiblePage = page;
+                    evictPages();
+                }
+            }
+        });
+
+        // start at the week of the first day of the requested month (or today in the current month)
+        int month = getIntent().getIntExtra(EXTRA_MONTH, CalendarMath.getMonth(today));
+        int year = getIntent().getIntExtra(EXTRA_YEAR, CalendarMath.getYear(today));
+        long startDay = month == CalendarMath.getMonth(today) && year == CalendarMath.getYear(today)
+                ? today : CalendarMath.toEpochDay(year, month, 1);
+        int startWeek = (int) Math.max(0, Math.min(weekCount - 1, (startDay - firstDay) / MonthModel.DAYS_PER_WEEK));
+        visiblePage = startWeek / WeekPage.WEEKS;
+        weeksList.setSelection(startWeek);
+        updateTitle(startWeek);
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        calendarObserver.addListener(calendarChangeListener);
+
+        long now = CalendarMath.getEpochDay(System.currentTimeMillis(), TimeZone.getDefault());
+        if (requestedGeneration != calendarObserver.getGeneration()) {
+            today = now;
+            reload();
+        } else if (now != today) {
+            // move the mark of the current day
+            today = now;
+            adapter.notifyDataSetChanged();
+        }
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        calendarObserver.removeListener(calendarChangeListener);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        for (int i = 0; i < pageTasks.size(); ++i) {
+            pageTasks.valueAt(i).cancelLoad();
+        }
+        pageTasks.clear();
+    }
+
+    /**
+     * Shows the month and year of the first visible week as title.
+     */
+    private void updateTitle(int week) {
+        // the last day of the week: the title changes with the week that contains the first day of a month
+        long day = firstDay + week * MonthModel.DAYS_PER_WEEK + MonthModel.DAYS_PER_WEEK - 1;
+        int year = CalendarMath.getYear(day);
+        int month = CalendarMath.getMonth(day);
+        if (year * 12 + month != titleMonth) {
+            titleMonth = year * 12 + month;
+            setTitle(monthNames[month] + " " + year);
+        }
+    }
+
+    /**
+     * Drops all pages and loads the visible pages again.
+     */
+    private void reload() {
+        for (int i = 0; i < pageTasks.size(); ++i) {
+            pageTasks.valueAt(i).cancelLoad();
+        }
+        pageTasks.clear();
+        pages.clear();
+        requestedGeneration = calendarObserver.getGeneration();
+        adapter.notifyDataSetChanged();
+        requestVisiblePages();
+    }
+
+    /**
+     * Requests the pages of the visible rows and one page before and after them.
+     */
+    private void requestVisiblePages() {
+        int first = weeksList.getFirstVisiblePosition() / WeekPage.WEEKS - 1;
+        int last = weeksList.getLastVisiblePosition() / WeekPage.WEEKS + 1;
+        for (int page = first; page <= last; ++page) {
+            requestPage(page);
+        }
+    }
+
+    /**
+     * Starts loading a page if it is neither loaded nor loading.
+     */
+    private void requestPage(int page) {
+        if (page < 0 || page * WeekPage.WEEKS >= weekCount || pages.get(page) != null || pageTasks.get(page) != null)
+            return;
+        PageTask task = new PageTask(page, calendarObserver.getGeneration());
+        pageTasks.put(page, task);
+        task.execute();
+    }
+
+    /**
+     * Removes the pages (and cancels the loads) outside of the window around the visible page.
+     */
+    private void evictPages() {
+        for (int i = pages.size() - 1; i >= 0; --i) {
+            if (Math.abs(pages.keyAt(i) - visiblePage) > WINDOW_PAGES) {
+                pages.removeAt(i);
+            }
+        }
+        for (int i = pageTasks.size() - 1; i >= 0; --i) {
+            if (Math.abs(pageTasks.keyAt(i) - visiblePage) > WINDOW_PAGES) {
+                pageTasks.valueAt(i).cancelLoad();
+                pageTasks.removeAt(i);
+            }
+        }
+    }
+
+    /**
+     * Opens the events of a day.
+     *
+     * @param day The day (00:00 UTC).
+     */
+    private void dayClick(Calendar day) {
+        startActivity(EventsView.newIntent(this, day));
+    }
+
+    /**
+     * Loads a page in the background.
+     */
+    private class PageTask extends AsyncTask<Void, Void, WeekPage> {
+        private final int page;
+        private final int generation;
+        private final CancellationSignal signal = new CancellationSignal();
+
+        private PageTask(int page, int generation) {
+            this.page = page;
+            this.generation = generation;
+        }
+
+        /**
+         * Cancels the task and, if it is already running, its query.
+         */
+        private void cancelLoad() {
+            cancel(false);
+            signal.cancel();
+        }
+
+        @Override
+        protected WeekPage doInBackground(Void... params) {
+            try {
+                return WeekPage.load(getApplicationContext(), page,
+                        firstDay + page * WeekPage.WEEKS * MonthModel.DAYS_PER_WEEK, generation, signal);
+            } catch (OperationCanceledException e) {
+                return null;
+            }
+        }
+
+        @Override
+        protected void onPostExecute(WeekPage result) {
+            if (result == null || pageTasks.get(page) != this)
+                return;
+            pageTasks.remove(page);
+            if (result.getGeneration() == calendarObserver.getGeneration()) {
+                pages.put(page, result);
+                // rebinds only the visible rows
+                adapter.notifyDataSetChanged();
+            }
+        }
+    }
+
+    /**
+     * One row per week.
+     */
+    private class WeeksAdapter extends BaseAdapter {
+
+        private final MonthGridView.OnDayClickListener onDayClickListener = new MonthGridView.OnDayClickListener() {
+            @Override
+            public void onDayClick(Calendar day) {
+                dayClick(day);
+            }
+        };
+
+        @Override
+        public int getCount() {
+            return weekCount;
+        }
+
+        @Override
+        public Object getItem(int position) {
+            return position;
+        }
+
+        @Override
+        public long getItemId(int position) {
+            return position;
+        }
+
+        @Override
+        public View getView(int position, View convertView, ViewGroup parent) {
+            WeekRowView row = (WeekRowView) convertView;
+            if (row == null) {
+                row = new WeekRowView(WeeksView.this, painter);
+                row.setOnDayClickListener(onDayClickListener);
+            }
+
+            int page = position / WeekPage.WEEKS;
+            WeekPage weekPage = pages.get(page);
+            if (weekPage == null && scrollState != AbsListView.OnScrollListener.SCROLL_STATE_FLING) {
+                requestPage(page);
+            }
+            long weekStart = firstDay + position * MonthModel.DAYS_PER_WEEK;
+            row.setWeek(weekStart, grid.getWeekOfYear(weekStart), today, weekPage,
+                    (position % WeekPage.WEEKS) * MonthModel.DAYS_PER_WEEK);
+            return row;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package org.ludmann.minimalisticcalendargrid.app;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.util.AttributeSet;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.SoundEffectConstants;
+import android.view.View;
+
+/**
+ * Draws the twelve months of a {@link YearModel} as small grids. Each day is a square that is shaded by its number of
+ * instances (relative to the busiest day of the year).
+ *
+ * @author Cornelius Ludmann
+ */
+public class YearHeatmapView extends View {
+
+    /**
+     * Listener for taps on a month.
+     */
+    public interface OnMonthClickListener {
+        /**
+         * @param month The tapped month (0 - 11).
+         */
+        void onMonthClick(int month);
+    }
+
+    private static final int MONTH_COLUMNS = 3;
+    private static final int MONTH_ROWS = 4;
+    /**
+     * Color of the busiest day. Days with fewer instances get a lower alpha.
+     */
+    private static final int HEAT_COLOR = 0x4fa5d5;
+    /**
+     * Alpha of a day without instances.
+     */
+    private static final int MIN_ALPHA = 0x20;
+
+    private final Paint labelPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint dayPaint = new Paint();
+    private final String[] monthNames = CalendarLabels.getMonthNames();
+    private final float cellSpacing;
+    private final float labelHeight;
+    private final float baselineOffset;
+    private final GestureDetector gestureDetector;
+
+    private YearModel model;
+    private OnMonthClickListener onMonthClickListener;
+
+    public YearHeatmapView(Context context) {
+        this(context, null);
+    }
+
+    public YearHeatmapView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+
+        cellSpacing = getResources().getDimension(R.dimen.grid_cell_spacing);
+
+        labelPaint.setTextSize(getResources().getDimension(R.dimen.grid_text_size));
+        labelPaint.setTypeface(Typeface.DEFAULT_BOLD);
+        Paint.FontMetrics fontMetrics = new Paint.FontMetrics();
+        labelHeight = labelPaint.getFontMetrics(fontMetrics);
+        baselineOffset = -fontMetrics.ascent;
+
+        gestureDetector = new GestureDetector(context, new GestureDetector.SimpleOnGestureListener() {
+            @Override
+            public boolean onDown(MotionEvent e) {
+                return true;
+            }
+
+            @Override
+            public boolean onSingleTapUp(MotionEvent e) {
+                int month = getMonthAt(e.getX(), e.getY());
+                if (month < 0 || onMonthClickListener == null)
+                    return false;
+                playSoundEffect(SoundEffectConstants.CLICK);
+                onMonthClickListener.onMonthClick(month);
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Sets the year to draw.
+     *
+     * @param model The year or null for an empty view.
+     */
+    public void setModel(YearModel model) {
+        this.model = model;
+        invalidate();
+    }
+
+    public void setOnMonthClickListener(OnMonthClickListener onMonthClickListener) {
+        this.onMonthClickListener = onMonthClickListener;
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        return gestureDetector.onTouchEvent(event) || super.onTouchEvent(event);
+    }
+
+    private float getMonthWidth() {
+        return (float) (getWidth() - getPaddingLeft() - getPaddingRight()) / MONTH_COLUMNS;
+    }
+
+    private float getMonthHeight() {
+        return (float) (getHeight() - getPaddingTop() - getPaddingBottom()) / MONTH_ROWS;
+    }
+
+    /**
+     * @return The month at the position or -1.
+     */
+    private int getMonthAt(float x, float y) {
+        int column = (int) ((x - getPaddingLeft()) / getMonthWidth());
+        int row = (int) ((y - getPaddingTop()) / getMonthHeight());
+        if (x < getPaddingLeft() || y < getPaddingTop() || column >= MONTH_COLUMNS || row >= MONTH_ROWS)
+            return -1;
+        return row * MONTH_COLUMNS + column;
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (model == null)
+            return;
+
+        float monthWidth = getMonthWidth();
+        float monthHeight = getMonthHeight();
+        // square days: 7 columns and up to 6 weeks below the label
+        float cellSize = Math.min((monthWidth - cellSpacing) / MonthModel.DAYS_PER_WEEK,
+                (monthHeight - labelHeight - cellSpacing) / MonthModel.MAX_ROWS);
+        int maxCount = Math.max(1, model.getMaxCount());
+
+        for (int month = 0; month < 12; ++month) {
+            float left = getPaddingLeft() + (month % MONTH_COLUMNS) * monthWidth;
+            float top = getPaddingTop() + (month / MONTH_COLUMNS) * monthHeight;
+            canvas.drawText(monthNames[month], left, top + baselineOffset, labelPaint);
+
+            int firstColumn = model.getFirstColumn(month);
+            int firstDayOfYear = model.getFirstDayOfYear(month);
+            int length = model.getLengthOfMonth(month);
+            for (int day = 0; day < length; ++day) {
+                int position = firstColumn + day;
+                float cellLeft = left + (position % MonthModel.DAYS_PER_WEEK) * cellSize;
+                float cellTop = top + labelHeight + (position / MonthModel.DAYS_PER_WEEK) * cellSize;
+
+                int count = model.getCount(firstDayOfYear + day);
+                int alpha = MIN_ALPHA + (0xff - MIN_ALPHA) * Math.min(count, maxCount) / maxCount;
+                dayPaint.setColor(alpha << 24 | HEAT_COLOR);
+                canvas.drawRect(cellLeft, cellTop, cellLeft + cellSize - 1, cellTop + cellSize - 1, dayPaint);
+            }
+        }
+    }
+}
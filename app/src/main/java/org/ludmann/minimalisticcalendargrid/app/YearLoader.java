@@ -0,0 +1,120 @@
+package org.ludmann.minimalisticcalendargrid.app;
+
+import android.content.AsyncTaskLoader;
+import android.content.ContentUris;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.CalendarContract;
+
+import org.ludmann.minimalisticcalendargrid.core.CalendarMath;
+import org.ludmann.minimalisticcalendargrid.core.MonthGrid;
+
+/**
+ * Counts the instances of each day of a year with a single query in the background.
+ *
+ * @author Cornelius Ludmann
+ */
+public class YearLoader extends AsyncTaskLoader<YearModel> {
+
+    /**
+     * Only the time range is needed to count the instances.
+     */
+    private static final String[] EVENTS_PROJECTION = new String[]{
+            CalendarContract.Instances.BEGIN,              // 0
+            CalendarContract.Instances.END                 // 1
+    };
+
+    private final int year;
+    private YearModel model;
+
+    public YearLoader(Context context, int year) {
+        super(context);
+        this.year = year;
+    }
+
+    @Override
+    public YearModel loadInBackground() {
+        int generation = CalendarObserver.getInstance(getContext()).getGeneration();
+
+        // due to the timestamp in the database are UTC: the days of the year are UTC days
+        long firstDay = CalendarMath.toEpochDay(year, 0, 1);
+        int days = (int) (CalendarMath.toEpochDay(year + 1, 0, 1) - firstDay);
+        long yearStart = firstDay * CalendarMath.DAY_IN_MILLIS;
+
+        Uri.Builder builder = InstanceSource.getInstance(getContext()).getInstancesUri().buildUpon();
+        ContentUris.appendId(builder, yearStart);
+        ContentUris.appendId(builder, yearStart + days * CalendarMath.DAY_IN_MILLIS - 1);
+        String[] selectionArgs = CalendarFilter.getInstance(getContext()).getSelectionArgs();
+        Cursor cursor = getContext().getContentResolver().query(builder.build(), EVENTS_PROJECTION,
+                CalendarFilter.getSelection(selectionArgs), selectionArgs, null);
+
+        // difference array: +1 at the first day of an instance, -1 after its last day
+        int[] counts = new int[366];
+        if (cursor != null) {
+            try {
+                while (cursor.moveToNext()) {
+                    long dtstart = cursor.getLong(0);
+                    long dtend = cursor.getLong(1);
+                    // same rule as the month grid: events ending at midnight do not belong to the next day
+                    int first = (int) Math.min(days, Math.max(0, CalendarMath.floorDiv(dtstart - yearStart, CalendarMath.DAY_IN_MILLIS)));
+                    int last = (int) Math.max(-1, Math.min(days - 1, CalendarMath.floorDiv(dtend - 1 - yearStart, CalendarMath.DAY_IN_MILLIS)));
+                    if (first <= last) {
+                        ++counts[first];
+                        if (last + 1 < days)
+                            --counts[last + 1];
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+
+        int maxCount = counts[0];
+        for (int day = 1; day < days; ++day) {
+            counts[day] += counts[day - 1];
+            maxCount = Math.max(maxCount, counts[day]);
+        }
+
+        MonthGrid grid = CalendarLabels.getMonthGrid();
+        int[] firstColumns = new int[12];
+        for (int month = 0; month < 12; ++month) {
+            firstColumns[month] = grid.getColumn(CalendarMath.toEpochDay(year, month, 1));
+        }
+
+        return new YearModel(generation, year, counts, maxCount, firstColumns);
+    }
+
+    @Override
+    public void deliverResult(YearModel model) {
+        if (isReset()) {
+            return;
+        }
+        this.model = model;
+        if (isStarted()) {
+            super.deliverResult(model);
+        }
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (model != null) {
+            deliverResult(model);
+        }
+        if (takeContentChanged() || model == null) {
+            forceLoad();
+        }
+    }
+
+    @Override
+    protected void onStopLoading() {
+        cancelLoad();
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        onStopLoading();
+        model = null;
+    }
+}
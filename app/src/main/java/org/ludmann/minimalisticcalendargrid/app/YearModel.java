@@ -0,0 +1,81 @@
+package org.ludmann.minimalisticcalendargrid.app;
+
+import org.ludmann.minimalisticcalendargrid.core.CalendarMath;
+
+/**
+ * Immutable number of instances per day of a year.
+ *
+ * @author Cornelius Ludmann
+ */
+public class YearModel {
+
+    private final int generation;
+    private final int year;
+    /**
+     * Number of instances of each day of the year (index 0 is january 1).
+     */
+    private final int[] counts;
+    private final int maxCount;
+    /**
+     * Column (0 - 6) of the first day of each month.
+     */
+    private final int[] firstColumns;
+
+    YearModel(int generation, int year, int[] counts, int maxCount, int[] firstColumns) {
+        this.generation = generation;
+        this.year = year;
+        this.counts = counts;
+        this.maxCount = maxCount;
+        this.firstColumns = firstColumns;
+    }
+
+    /**
+     * @return The {@link CalendarObserver} generation at the start of the query.
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    /**
+     * @param dayOfYear The day of the year (0 is january 1).
+     * @return The number of instances of the day.
+     */
+    public int getCount(int dayOfYear) {
+        return counts[dayOfYear];
+    }
+
+    /**
+     * @return The highest number of instances of a day of the year.
+     */
+    public int getMaxCount() {
+        return maxCount;
+    }
+
+    /**
+     * @param month The month (0 - 11).
+     * @return The column of the first day of the month (0 - 6).
+     */
+    public int getFirstColumn(int month) {
+        return firstColumns[month];
+    }
+
+    /**
+     * @param month The month (0 - 11).
+     * @return The day of the year of the first day of the month.
+     */
+    public int getFirstDayOfYear(int month) {
+        return (int) (CalendarMath.toEpochDay(year, month, 1) - CalendarMath.toEpochDay(year, 0, 1));
+    }
+
+    /**
+     * @param month The month (0 - 11).
+     * @return The number of days of the month.
+     */
+    public int getLengthOfMonth(int month) {
+        return CalendarMath.getLengthOfMonth(year, month);
+    }
+}
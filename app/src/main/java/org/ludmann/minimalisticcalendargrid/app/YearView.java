@@ -0,0 +1,88 @@
+package org.ludmann.minimalisticcalendargrid.app;
+
+import android.app.Activity;
+import android.app.LoaderManager;
+import android.content.Intent;
+import android.content.Loader;
+import android.os.Bundle;
+import android.widget.TextView;
+
+/**
+ * Overview of a year: the number of instances of each day as a heatmap. A tap on a month shows the month in the
+ * {@link CalendarView}.
+ *
+ * @author Cornelius Ludmann
+ */
+public class YearView extends Activity implements LoaderManager.LoaderCallbacks<YearModel> {
+
+    /**
+     * Intent extra: the year to show. Result extra: the year of the tapped month.
+     */
+    public static final String EXTRA_YEAR = "year";
+    /**
+     * Result extra: the tapped month.
+     */
+    public static final String EXTRA_MONTH = "month";
+
+    private int year;
+    private YearHeatmapView heatmap;
+    /**
+     * Counts the changes of the calendar provider.
+     */
+    private CalendarObserver calendarObserver;
+    /**
+     * The {@link CalendarObserver} generation of the last requested load.
+     */
+    private int requestedGeneration;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_year_view);
+
+        year = getIntent().getIntExtra(EXTRA_YEAR, 0);
+        ((TextView) findViewById(R.id.year)).setText(String.valueOf(year));
+
+        heatmap = (YearHeatmapView) findViewById(R.id.year_heatmap);
+        heatmap.setOnMonthClickListener(new YearHeatmapView.OnMonthClickListener() {
+            @Override
+            public void onMonthClick(int month) {
+                Intent result = new Intent();
+                result.putExtra(EXTRA_YEAR, year);
+                result.putExtra(EXTRA_MONTH, month);
+                setResult(RESULT_OK, result);
+                finish();
+            }
+        });
+
+        calendarObserver = CalendarObserver.getInstance(this);
+        getLoaderManager().initLoader(0, null, this);
+        requestedGeneration = calendarObserver.getGeneration();
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+
+        // Update data (only if the calendar has changed since the last load)
+        if (requestedGeneration != calendarObserver.getGeneration()) {
+            getLoaderManager().restartLoader(0, null, this);
+            requestedGeneration = calendarObserver.getGeneration();
+        }
+    }
+
+    @Override
+    public Loader<YearModel> onCreateLoader(int loaderId, Bundle bundle) {
+        return new YearLoader(this, year);
+    }
+
+    @Override
+    public void onLoadFinished(Loader<YearModel> loader, YearModel model) {
+        heatmap.setModel(model);
+    }
+
+    @Override
+    public void onLoaderReset(Loader<YearModel> loader) {
+        heatmap.setModel(null);
+    }
+}
@@ -0,0 +1,119 @@
+package org.ludmann.minimalisticcalendargrid.app;
+
+import android.content.Intent;
+import android.view.View;
+import android.view.ViewGroup;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Drives the {@link CalendarView} over a dense stand-in calendar like a user: jumps with
+ * {@link CalendarView#setMonthAndYear(int, int)}, swipes and day clicks. Each step runs the loaders until the month is
+ * shown; the duration of each step, the number of views and the stage timings are written with {@link TimingReport}.
+ *
+ * @author Cornelius Ludmann
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(emulateSdk = 18)
+public class CalendarViewStressTest {
+
+    private CalendarView activity;
+    private MonthGridView monthGrid;
+    private StringBuilder report;
+
+    @Before
+    public void setUp() {
+        StandInCalendar.install(Robolectric.application, 30, 20, 20);
+        activity = Robolectric.buildActivity(CalendarView.class).create().start().resume().visible().get();
+        monthGrid = (MonthGridView) activity.findViewById(R.id.month_grid);
+        report = new StringBuilder();
+        runLoaders();
+    }
+
+    @Test
+    public void jumpAndSwipe() throws IOException {
+        // the grid is drawn on a canvas: the number of views does not depend on the number of instances
+        int viewCount = countViews(activity.getWindow().getDecorView());
+        int month = 0;
+        int year = 2012;
+        for (int step = 0; step < 36; ++step) {
+            long start = System.nanoTime();
+            if (step % 12 == 0) {
+                year += 2;
+                activity.setMonthAndYear(month, year);
+            } else if (step % 6 == 5) {
+                activity.onSwipeRight();
+                month = month == 0 ? 11 : month - 1;
+                year = month == 11 ? year - 1 : year;
+            } else {
+                activity.onSwipeLeft();
+                month = month == 11 ? 0 : month + 1;
+                year = month == 0 ? year + 1 : year;
+            }
+            runLoaders();
+            record(step, start);
+
+            MonthModel model = monthGrid.getModel();
+            assertNotNull(model);
+            assertEquals(month, model.getMonth());
+            assertEquals(year, model.getYear());
+            assertEquals(viewCount, countViews(activity.getWindow().getDecorView()));
+        }
+        report.append(StageTimer.getReport());
+        TimingReport.write("CalendarViewStressTest.jumpAndSwipe", report);
+    }
+
+    @Test
+    public void dayClickOpensTheDay() throws IOException {
+        activity.setMonthAndYear(2, 2014);
+        runLoaders();
+        MonthModel model = monthGrid.getModel();
+        assertNotNull(model);
+
+        long start = System.nanoTime();
+        // a day in the middle of the month
+        activity.dayClick(model.getDay(17));
+        record(0, start);
+        Intent intent = Robolectric.shadowOf(activity).getNextStartedActivity();
+        assertNotNull(intent);
+        assertEquals(EventsView.class.getName(), intent.getComponent().getClassName());
+        TimingReport.write("CalendarViewStressTest.dayClickOpensTheDay", report);
+    }
+
+    /**
+     * Runs the pending loads and the delayed navigation until nothing is left.
+     */
+    private static void runLoaders() {
+        for (int i = 0; i < 10; ++i) {
+            Robolectric.runUiThreadTasksIncludingDelayedTasks();
+            Robolectric.runBackgroundTasks();
+        }
+    }
+
+    private void record(int step, long start) {
+        report.append(String.format(Locale.US, "step %2d: %8.2f ms, %d views%n", step,
+                (System.nanoTime() - start) / 1e6, countViews(activity.getWindow().getDecorView())));
+    }
+
+    private static int countViews(View view) {
+        int count = 1;
+        if (view instanceof ViewGroup) {
+            ViewGroup group = (ViewGroup) view;
+            for (int i = 0; i < group.getChildCount(); ++i) {
+                count += countViews(group.getChildAt(i));
+            }
+        }
+        return count;
+    }
+}
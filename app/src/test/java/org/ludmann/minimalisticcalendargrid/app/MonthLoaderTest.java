@@ -0,0 +1,111 @@
+package org.ludmann.minimalisticcalendargrid.app;
+
+import android.content.Context;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Loads months of a dense stand-in calendar with {@link MonthLoader#loadMonth} in both query modes and checks the
+ * models against the generated instances. The stage timings are written with {@link TimingReport}.
+ *
+ * @author Cornelius Ludmann
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(emulateSdk = 18)
+public class MonthLoaderTest {
+
+    private static final int EVENTS_PER_DAY = 20;
+    private static final int WEEKLY_SERIES = 10;
+    private static final int MULTI_DAY_PERCENT = 20;
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = Robolectric.application;
+        StandInCalendar.install(context, EVENTS_PER_DAY, WEEKLY_SERIES, MULTI_DAY_PERCENT);
+    }
+
+    @Test
+    public void everyDayShowsItsInstances() throws IOException {
+        for (int i = 0; i < 36; ++i) {
+            int month = i % 12;
+            int year = 2013 + i / 12;
+            MonthModel model = load(month, year, false);
+            long firstDay = GridGeometryCache.getInstance(context).get(month, year).getFirstDay();
+            for (int cell = 0; cell < model.getRowCount() * MonthModel.DAYS_PER_WEEK; ++cell) {
+                // each instance that overlaps the day is either a line of the cell or a bar over it, never both
+                assertEquals(year + "-" + month + " cell " + cell,
+                        StandInCalendarProvider.getInstanceCount(firstDay + cell, EVENTS_PER_DAY, WEEKLY_SERIES,
+                                MULTI_DAY_PERCENT),
+                        model.getEventCount(cell) + getBarCount(model, cell));
+            }
+        }
+        TimingReport.write("MonthLoaderTest.everyDayShowsItsInstances", StageTimer.getReport());
+    }
+
+    @Test
+    public void bothQueryModesFillTheSameCells() throws IOException {
+        for (int i = 0; i < 12; ++i) {
+            MonthModel byMillis = load(i, 2014, false);
+            MonthModel byDay = load(i, 2014, true);
+            assertEquals(byMillis.getMultiDayCount(), byDay.getMultiDayCount());
+            for (int cell = 0; cell < byMillis.getRowCount() * MonthModel.DAYS_PER_WEEK; ++cell) {
+                assertEquals(byMillis.getEventCount(cell), byDay.getEventCount(cell));
+                for (int index = 0; index < byMillis.getEventCount(cell); ++index) {
+                    assertEquals(byMillis.getEventTitle(cell, index), byDay.getEventTitle(cell, index));
+                }
+            }
+        }
+        TimingReport.write("MonthLoaderTest.bothQueryModesFillTheSameCells", StageTimer.getReport());
+    }
+
+    @Test
+    public void secondLoadIsServedFromTheDiskCache() {
+        MonthModel first = load(5, 2014, false);
+        GridGeometry geometry = GridGeometryCache.getInstance(context).get(5, 2014);
+        assertNotNull(InstanceDiskCache.getInstance(context).get(geometry, false));
+
+        MonthModel second = load(5, 2014, false);
+        for (int cell = 0; cell < first.getRowCount() * MonthModel.DAYS_PER_WEEK; ++cell) {
+            assertTrue(first.hasSameCell(second, cell));
+        }
+        for (int row = 0; row < first.getRowCount(); ++row) {
+            assertTrue(first.hasSameBars(second, row));
+        }
+    }
+
+    private MonthModel load(int month, int year, boolean byDay) {
+        GridGeometry geometry = GridGeometryCache.getInstance(context).get(month, year);
+        int generation = CalendarObserver.getInstance(context).getGeneration();
+        MonthModel model = MonthLoader.loadMonth(context, EventRepository.getInstance(context),
+                InstanceDiskCache.getInstance(context), geometry, generation, byDay, null);
+        assertEquals(month, model.getMonth());
+        assertEquals(year, model.getYear());
+        return model;
+    }
+
+    /**
+     * @return The number of bars that cover a cell.
+     */
+    private static int getBarCount(MonthModel model, int cell) {
+        int row = cell / MonthModel.DAYS_PER_WEEK;
+        int count = 0;
+        for (int bar = model.getFirstBar(row); bar < model.getEndBar(row); ++bar) {
+            if (model.getBarFirstCell(bar) <= cell && cell <= model.getBarLastCell(bar))
+                ++count;
+        }
+        return count;
+    }
+}
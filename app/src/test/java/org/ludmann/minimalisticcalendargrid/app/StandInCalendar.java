@@ -0,0 +1,45 @@
+package org.ludmann.minimalisticcalendargrid.app;
+
+import android.content.Context;
+
+import org.robolectric.shadows.ShadowContentResolver;
+
+/**
+ * Connects the tests to the stand-in provider (see {@link StandInCalendarProvider}).
+ * <p/>
+ * The stand-in is not in the manifest, so it is registered with the shadow content resolver. The caches are process
+ * wide and may still hold the months of another test, so they are cleared.
+ *
+ * @author Cornelius Ludmann
+ */
+final class StandInCalendar {
+
+    private StandInCalendar() {
+
+    }
+
+    /**
+     * Registers the stand-in provider, switches the {@link InstanceSource} to it and clears the caches.
+     *
+     * @param context         The application context of the test.
+     * @param eventsPerDay    Number of single instances per day.
+     * @param weeklySeries    Number of weekly recurring events.
+     * @param multiDayPercent Percentage of the single instances that span two to four days.
+     */
+    static void install(Context context, int eventsPerDay, int weeklySeries, int multiDayPercent) {
+        StandInCalendarProvider provider = new StandInCalendarProvider();
+        // sets the context of the provider and calls onCreate()
+        provider.attachInfo(context, null);
+        ShadowContentResolver.registerProvider(InstanceSource.STAND_IN_AUTHORITY, provider);
+
+        InstanceSource source = InstanceSource.getInstance(context);
+        source.setStandIn(true);
+        source.setStandInDensity(eventsPerDay, weeklySeries, multiDayPercent);
+
+        MonthCache.getInstance(context).evictAll();
+        EventRepository.getInstance(context).evictAll();
+        InstanceDiskCache.getInstance(context).evictAll();
+        SearchIndex.getInstance(context).evictAll();
+        StageTimer.reset();
+    }
+}
@@ -0,0 +1,242 @@
+package org.ludmann.minimalisticcalendargrid.app;
+
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.content.UriMatcher;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import android.provider.CalendarContract;
+
+import org.ludmann.minimalisticcalendargrid.core.CalendarMath;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Stand-in for the instance URIs of the calendar provider (see {@link InstanceSource}).
+ * <p/>
+ * The instances are generated from the day number, so every query of a day returns the same instances. Each day
+ * has {@link InstanceSource#getStandInEventsPerDay()} single instances (about 15 % all-day, the configured percentage
+ * spanning two to four days, the others timed), and every weekly series occurs once per week. All days are UTC days,
+ * like the all-day events of the real provider. The selection and the sort order are ignored, the instances are sorted
+ * by begin.
+ * <p/>
+ * The provider is not in the manifest; {@link StandInCalendar} registers it with the shadow content resolver.
+ *
+ * @author Cornelius Ludmann
+ */
+public class StandInCalendarProvider extends ContentProvider {
+
+    private static final int INSTANCES = 1;
+    private static final int INSTANCES_BY_DAY = 2;
+
+    /**
+     * Longest span of a multi-day instance.
+     */
+    private static final int MAX_SPAN_DAYS = 4;
+    private static final long MINUTE_IN_MILLIS = 60L * 1000;
+
+    private static final String[] TITLES = new String[]{
+            "Meeting", "Lunch", "Call", "Review", "Dentist", "Training", "Dinner", "Workshop", "Standup", "Interview",
+            "Birthday", "Concert", "Flight", "Gym", "Doctor", "Trip", "Conference", "Planning", "Demo", "Party"
+    };
+    private static final int[] COLORS = new int[]{
+            0xff2196f3, 0xff4caf50, 0xfff44336, 0xffff9800, 0xff9c27b0, 0xff607d8b
+    };
+
+    private static final UriMatcher URI_MATCHER = new UriMatcher(UriMatcher.NO_MATCH);
+
+    static {
+        URI_MATCHER.addURI(InstanceSource.STAND_IN_AUTHORITY, "instances/when/#/#", INSTANCES);
+        URI_MATCHER.addURI(InstanceSource.STAND_IN_AUTHORITY, "instances/whenbyday/#/#", INSTANCES_BY_DAY);
+    }
+
+    @Override
+    public boolean onCreate() {
+        return true;
+    }
+
+    @Override
+    public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+        int match = URI_MATCHER.match(uri);
+        if (match == UriMatcher.NO_MATCH)
+            throw new IllegalArgumentException("Unknown URI " + uri);
+        long first = Long.parseLong(uri.getPathSegments().get(2));
+        long last = Long.parseLong(uri.getPathSegments().get(3));
+
+        // the range in days and in milliseconds (both inclusive)
+        long firstDay, lastDay, begin, end;
+        if (match == INSTANCES) {
+            begin = first;
+            end = last;
+            firstDay = CalendarMath.floorDiv(begin, CalendarMath.DAY_IN_MILLIS);
+            lastDay = CalendarMath.floorDiv(end, CalendarMath.DAY_IN_MILLIS);
+        } else {
+            firstDay = first - CalendarMath.JULIAN_DAY_OF_EPOCH;
+            lastDay = last - CalendarMath.JULIAN_DAY_OF_EPOCH;
+            begin = firstDay * CalendarMath.DAY_IN_MILLIS;
+            end = (lastDay + 1) * CalendarMath.DAY_IN_MILLIS - 1;
+        }
+
+        InstanceSource source = InstanceSource.getInstance(getContext());
+        List<Instance> instances = new ArrayList<Instance>();
+        for (long day = firstDay - MAX_SPAN_DAYS + 1; day <= lastDay; ++day) {
+            generateDay(day, source.getStandInEventsPerDay(), source.getStandInWeeklySeries(),
+                    source.getStandInMultiDayPercent(), instances);
+        }
+
+        Collections.sort(instances, new Comparator<Instance>() {
+            @Override
+            public int compare(Instance lhs, Instance rhs) {
+                return lhs.begin < rhs.begin ? -1 : (lhs.begin == rhs.begin ? 0 : 1);
+            }
+        });
+
+        MatrixCursor cursor = new MatrixCursor(projection);
+        Object[] row = new Object[projection.length];
+        int id = 0;
+        for (Instance instance : instances) {
+            // instances ending at the begin of the range do not overlap it
+            if (instance.begin > end || instance.end <= begin)
+                continue;
+            for (int column = 0; column < projection.length; ++column) {
+                row[column] = getValue(instance, ++id, projection[column]);
+            }
+            cursor.addRow(row);
+        }
+        return cursor;
+    }
+
+    /**
+     * @param day             The (UTC) epoch day.
+     * @param eventsPerDay    Number of single instances per day.
+     * @param weeklySeries    Number of weekly recurring events.
+     * @param multiDayPercent Percentage of the single instances that span two to four days.
+     * @return The number of generated instances that overlap the day.
+     */
+    static int getInstanceCount(long day, int eventsPerDay, int weeklySeries, int multiDayPercent) {
+        List<Instance> instances = new ArrayList<Instance>();
+        for (long startDay = day - MAX_SPAN_DAYS + 1; startDay <= day; ++startDay) {
+            generateDay(startDay, eventsPerDay, weeklySeries, multiDayPercent, instances);
+        }
+        long begin = day * CalendarMath.DAY_IN_MILLIS;
+        long end = begin + CalendarMath.DAY_IN_MILLIS;
+        int count = 0;
+        for (Instance instance : instances) {
+            if (instance.begin < end && instance.end > begin)
+                ++count;
+        }
+        return count;
+    }
+
+    /**
+     * Adds the instances that start on a day.
+     */
+    private static void generateDay(long day, int eventsPerDay, int weeklySeries, int multiDayPercent,
+                                    List<Instance> instances) {
+        Random random = new Random(day);
+        long startOfDay = day * CalendarMath.DAY_IN_MILLIS;
+        for (int i = 0; i < eventsPerDay; ++i) {
+            Instance instance = new Instance();
+            instance.eventId = day * 1000 + i;
+            instance.title = TITLES[random.nextInt(TITLES.length)];
+            instance.location = i % 3 == 0 ? "Room " + random.nextInt(10) : null;
+            instance.color = COLORS[random.nextInt(COLORS.length)];
+            instance.hasAlarm = i % 4 == 0;
+            if (random.nextInt(100) < multiDayPercent) {
+                instance.allDay = true;
+                instance.begin = startOfDay;
+                instance.end = startOfDay + (2 + random.nextInt(MAX_SPAN_DAYS - 1)) * CalendarMath.DAY_IN_MILLIS;
+            } else if (random.nextInt(100) < 15) {
+                instance.allDay = true;
+                instance.begin = startOfDay;
+                instance.end = startOfDay + CalendarMath.DAY_IN_MILLIS;
+            } else {
+                // between 07:00 and 20:45 in quarter hours, half an hour up to three hours
+                instance.begin = startOfDay + (7 * 60 + random.nextInt(56) * 15) * MINUTE_IN_MILLIS;
+                instance.end = instance.begin + (1 + random.nextInt(6)) * 30 * MINUTE_IN_MILLIS;
+            }
+            instances.add(instance);
+        }
+
+        for (int series = 0; series < weeklySeries; ++series) {
+            if (CalendarMath.floorMod(day, 7) != series % 7)
+                continue;
+            Instance instance = new Instance();
+            instance.eventId = -1 - series;
+            instance.title = "Weekly " + TITLES[series % TITLES.length];
+            instance.color = COLORS[series % COLORS.length];
+            instance.hasAlarm = true;
+            instance.begin = startOfDay + (8 + series / 7 % 10) * 60 * MINUTE_IN_MILLIS;
+            instance.end = instance.begin + 60 * MINUTE_IN_MILLIS;
+            instances.add(instance);
+        }
+    }
+
+    /**
+     * @return The value of the column or null if the stand-in does not know the column.
+     */
+    private static Object getValue(Instance instance, int id, String column) {
+        if (CalendarContract.Instances._ID.equals(column))
+            return id;
+        if (CalendarContract.Instances.EVENT_ID.equals(column))
+            return instance.eventId;
+        if (CalendarContract.Instances.TITLE.equals(column))
+            return instance.title;
+        if (CalendarContract.Instances.EVENT_LOCATION.equals(column))
+            return instance.location;
+        if (CalendarContract.Instances.BEGIN.equals(column))
+            return instance.begin;
+        if (CalendarContract.Instances.END.equals(column))
+            return instance.end;
+        if (CalendarContract.Instances.ALL_DAY.equals(column))
+            return instance.allDay ? 1 : 0;
+        if (CalendarContract.Instances.VISIBLE.equals(column))
+            return 1;
+        if (CalendarContract.Instances.DISPLAY_COLOR.equals(column))
+            return instance.color;
+        if (CalendarContract.Instances.CALENDAR_DISPLAY_NAME.equals(column))
+            return "Stand-in";
+        if (CalendarContract.Instances.HAS_ALARM.equals(column))
+            return instance.hasAlarm ? 1 : 0;
+        return null;
+    }
+
+    @Override
+    public String getType(Uri uri) {
+        return null;
+    }
+
+    @Override
+    public Uri insert(Uri uri, ContentValues values) {
+        throw new UnsupportedOperationException("The stand-in calendar is read only");
+    }
+
+    @Override
+    public int delete(Uri uri, String selection, String[] selectionArgs) {
+        throw new UnsupportedOperationException("The stand-in calendar is read only");
+    }
+
+    @Override
+    public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+        throw new UnsupportedOperationException("The stand-in calendar is read only");
+    }
+
+    /**
+     * A generated instance.
+     */
+    private static final class Instance {
+        private long eventId;
+        private long begin;
+        private long end;
+        private boolean allDay;
+        private String title;
+        private String location;
+        private int color;
+        private boolean hasAlarm;
+    }
+}
@@ -0,0 +1,36 @@
+package org.ludmann.minimalisticcalendargrid.app;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes the timings of a test into build/reports/timings/&lt;name&gt;.txt of the module, next to the test reports.
+ *
+ * @author Cornelius Ludmann
+ */
+final class TimingReport {
+
+    private static final File DIRECTORY = new File("build/reports/timings");
+
+    private TimingReport() {
+
+    }
+
+    /**
+     * @param name   The name of the file without extension, e. g. the name of the test.
+     * @param report The timings.
+     * @throws IOException If the file cannot be written.
+     */
+    static void write(String name, CharSequence report) throws IOException {
+        if (!DIRECTORY.isDirectory() && !DIRECTORY.mkdirs())
+            throw new IOException("Cannot create " + DIRECTORY);
+        Writer writer = new FileWriter(new File(DIRECTORY, name + ".txt"));
+        try {
+            writer.append(report);
+        } finally {
+            writer.close();
+        }
+    }
+}
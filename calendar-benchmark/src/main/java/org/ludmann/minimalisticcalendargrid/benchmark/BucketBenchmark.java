@@ -0,0 +1,81 @@
+package org.ludmann.minimalisticcalendargrid.benchmark;
+
+import org.ludmann.minimalisticcalendargrid.core.CalendarMath;
+import org.ludmann.minimalisticcalendargrid.core.DayBuckets;
+import org.ludmann.minimalisticcalendargrid.core.MonthGrid;
+import org.ludmann.minimalisticcalendargrid.core.WeekLanes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Calendar;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Matching of the instances of a month to the days of the grid: the former scan over all instances per day against
+ * the single sweep of {@link DayBuckets} (both query modes of the app assign the cells from the timestamps), and the
+ * lane assignment of the multi-day instances ({@link WeekLanes}).
+ *
+ * @author Cornelius Ludmann
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BucketBenchmark {
+
+    private static final int YEAR = 2014;
+    private static final int MONTH = Calendar.MARCH;
+    private static final int CELL_COUNT = 42;
+
+    @Param({"0", "100", "1000", "10000", "50000"})
+    public int eventCount;
+
+    private long gridStart;
+    private long[] begin;
+    private long[] end;
+
+    @Setup
+    public void setUp() {
+        Calendar calendar = Calendar.getInstance();
+        MonthGrid grid = new MonthGrid(calendar.getFirstDayOfWeek(), calendar.getMinimalDaysInFirstWeek());
+        long firstDay = grid.getFirstDay(YEAR, MONTH);
+        gridStart = firstDay * CalendarMath.DAY_IN_MILLIS;
+
+        SyntheticEvents events = SyntheticEvents.generate(eventCount, firstDay, CELL_COUNT, 42);
+        begin = events.getBegin();
+        end = events.getEnd();
+    }
+
+    @Benchmark
+    public int legacyScan() {
+        return LegacyCalendarGrid.matchInstances(MONTH, YEAR, begin, end, begin.length);
+    }
+
+    @Benchmark
+    public int dayBuckets() {
+        DayBuckets buckets = DayBuckets.build(begin, end, begin.length, gridStart, CELL_COUNT);
+        int matches = 0;
+        for (int cell = 0; cell < CELL_COUNT; ++cell) {
+            matches += buckets.getCount(cell);
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public int weekLanes() {
+        DayBuckets buckets = DayBuckets.build(begin, end, begin.length, gridStart, CELL_COUNT);
+        WeekLanes lanes = WeekLanes.build(buckets, CELL_COUNT / MonthGrid.DAYS_PER_WEEK);
+        return lanes.getBarCount();
+    }
+}
@@ -0,0 +1,111 @@
+package org.ludmann.minimalisticcalendargrid.benchmark;
+
+import org.ludmann.minimalisticcalendargrid.core.CalendarMath;
+import org.ludmann.minimalisticcalendargrid.core.MonthGrid;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Grid stages without events: grid bounds, week numbers and day styles of a month, and the bounds of each day of the
+ * grid. Each benchmark walks all months of a year, so that every first day of week offset is covered.
+ *
+ * @author Cornelius Ludmann
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GridBenchmark {
+
+    private static final int YEAR = 2014;
+
+    private MonthGrid grid;
+
+    @Setup
+    public void setUp() {
+        Calendar calendar = Calendar.getInstance();
+        grid = new MonthGrid(calendar.getFirstDayOfWeek(), calendar.getMinimalDaysInFirstWeek());
+    }
+
+    @Benchmark
+    public long legacyGrid() {
+        long checksum = 0;
+        for (int month = 0; month < 12; ++month) {
+            checksum += LegacyCalendarGrid.walkGrid(month, YEAR);
+        }
+        return checksum;
+    }
+
+    @Benchmark
+    public long coreGrid() {
+        long today = CalendarMath.getEpochDay(System.currentTimeMillis(), TimeZone.getDefault());
+        long checksum = 0;
+        for (int month = 0; month < 12; ++month) {
+            checksum += walkGrid(month, YEAR, today);
+        }
+        return checksum;
+    }
+
+    /**
+     * Same walk as {@link LegacyCalendarGrid#walkGrid(int, int)} with the core module.
+     */
+    private long walkGrid(int month, int year, long today) {
+        long firstDay = grid.getFirstDay(year, month);
+        long firstOfMonth = CalendarMath.toEpochDay(year, month, 1);
+        long lastOfMonth = firstOfMonth + CalendarMath.getLengthOfMonth(year, month) - 1;
+        grid.getLastDay(year, month);
+        int rowCount = grid.getRowCount(year, month);
+        long checksum = 0;
+        for (int row = 0; row < rowCount; ++row) {
+            checksum += grid.getWeekOfYear(firstDay + row * MonthGrid.DAYS_PER_WEEK);
+            for (int column = 0; column < MonthGrid.DAYS_PER_WEEK; ++column) {
+                long day = firstDay + row * MonthGrid.DAYS_PER_WEEK + column;
+                checksum = 31 * checksum + CalendarMath.getDayOfMonth(day);
+                if (day == today)
+                    checksum += 1;
+                else if (day < firstOfMonth || day > lastOfMonth)
+                    checksum += 2;
+                else if (CalendarMath.isWeekend(day))
+                    checksum += 3;
+            }
+        }
+        return checksum;
+    }
+
+    @Benchmark
+    public long legacyDayBounds() {
+        long checksum = 0;
+        for (int month = 0; month < 12; ++month) {
+            checksum += LegacyCalendarGrid.dayBounds(month, YEAR);
+        }
+        return checksum;
+    }
+
+    @Benchmark
+    public long coreDayBounds() {
+        long checksum = 0;
+        for (int month = 0; month < 12; ++month) {
+            long firstDay = grid.getFirstDay(YEAR, month);
+            for (int cell = 0; cell < 42; ++cell) {
+                long startOfDay = (firstDay + cell) * CalendarMath.DAY_IN_MILLIS + 1;
+                long endOfDay = startOfDay - 1 + CalendarMath.DAY_IN_MILLIS - 1;
+                checksum += startOfDay ^ endOfDay;
+            }
+        }
+        return checksum;
+    }
+}
@@ -0,0 +1,133 @@
+package org.ludmann.minimalisticcalendargrid.benchmark;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * The former {@link Calendar} based month pipeline of the app (grid bounds of CalendarLabels, the day bounds and the
+ * per-day scan over all instances of CalendarView.updateRow). Kept as the baseline of the benchmarks.
+ *
+ * @author Cornelius Ludmann
+ */
+public final class LegacyCalendarGrid {
+
+    private LegacyCalendarGrid() {
+
+    }
+
+    public static Calendar getFirstDayOfMonth(int month, int year) {
+        Calendar calendar = Calendar.getInstance();
+        // due to the timestamp in the database are UTC:
+        calendar.setTimeZone(TimeZone.getTimeZone("UTC"));
+        calendar.set(year, month, 1, 0, 0, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        int dayOfWeek = calendar.get(Calendar.DAY_OF_WEEK);
+        int firstDayOfWeek = calendar.getFirstDayOfWeek();
+        if (dayOfWeek != firstDayOfWeek) {
+            int d = firstDayOfWeek - dayOfWeek;
+            if (d < 0) {
+                calendar.add(Calendar.DAY_OF_MONTH, d);
+            } else if (d > 0) {
+                calendar.add(Calendar.DAY_OF_MONTH, d - 7);
+            }
+        }
+        return calendar;
+    }
+
+    public static Calendar getLastDayOfMonth(int month, int year) {
+        Calendar calendar = Calendar.getInstance();
+        // due to the timestamp in the database are UTC:
+        calendar.setTimeZone(TimeZone.getTimeZone("UTC"));
+        calendar.set(year, month, 1, 23, 59, 59);
+        calendar.set(Calendar.MILLISECOND, calendar.getActualMaximum(Calendar.MILLISECOND));
+        calendar.set(Calendar.DAY_OF_MONTH, calendar.getActualMaximum(Calendar.DAY_OF_MONTH));
+        int dayOfWeek = calendar.get(Calendar.DAY_OF_WEEK);
+        int firstDayOfWeek = calendar.getFirstDayOfWeek();
+
+        int d = firstDayOfWeek - dayOfWeek;
+        if (d <= 0) {
+            calendar.add(Calendar.DAY_OF_MONTH, d + 6);
+        } else if (d > 0) {
+            calendar.add(Calendar.DAY_OF_MONTH, d - 1);
+        }
+        return calendar;
+    }
+
+    /**
+     * Walks the grid like updateRow: week number per row, day number and styles per day.
+     *
+     * @return A checksum of the computed values.
+     */
+    public static long walkGrid(int month, int year) {
+        Calendar now = Calendar.getInstance();
+        Calendar calendar = getFirstDayOfMonth(month, year);
+        getLastDayOfMonth(month, year);
+        long checksum = 0;
+        for (int row = 0; row < 6; ++row) {
+            if (row >= 4 && calendar.get(Calendar.MONTH) != month)
+                break;
+            checksum += calendar.get(Calendar.WEEK_OF_YEAR);
+            for (int column = 0; column < 7; ++column) {
+                checksum = 31 * checksum + calendar.get(Calendar.DAY_OF_MONTH);
+                if (now.get(Calendar.YEAR) == year && now.get(Calendar.MONTH) == month && now.get(Calendar.DAY_OF_MONTH) == calendar.get(Calendar.DAY_OF_MONTH))
+                    checksum += 1;
+                else if (calendar.get(Calendar.MONTH) != month)
+                    checksum += 2;
+                else if (calendar.get(Calendar.DAY_OF_WEEK) == Calendar.SATURDAY || calendar.get(Calendar.DAY_OF_WEEK) == Calendar.SUNDAY)
+                    checksum += 3;
+                calendar.add(Calendar.DAY_OF_MONTH, 1);
+            }
+        }
+        return checksum;
+    }
+
+    /**
+     * Computes the bounds of each day of the grid like updateRow.
+     *
+     * @return A checksum of the bounds.
+     */
+    public static long dayBounds(int month, int year) {
+        Calendar calendar = getFirstDayOfMonth(month, year);
+        long checksum = 0;
+        for (int cell = 0; cell < 42; ++cell) {
+            long[] bounds = getDayBounds(calendar);
+            checksum += bounds[0] ^ bounds[1];
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+        }
+        return checksum;
+    }
+
+    /**
+     * Matches the instances to the days like updateRow: a scan over all instances for each day.
+     *
+     * @return The number of (day, instance) matches.
+     */
+    public static int matchInstances(int month, int year, long[] begin, long[] end, int count) {
+        Calendar calendar = getFirstDayOfMonth(month, year);
+        int matches = 0;
+        for (int cell = 0; cell < 42; ++cell) {
+            long[] bounds = getDayBounds(calendar);
+            for (int i = 0; i < count; ++i) {
+                if (begin[i] <= bounds[1] && end[i] >= bounds[0])
+                    ++matches;
+            }
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+        }
+        return matches;
+    }
+
+    private static long[] getDayBounds(Calendar calendar) {
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        // add one millisecond: don't show events ending at midnight
+        long startOfDay = calendar.getTimeInMillis() + 1;
+        calendar.set(Calendar.HOUR_OF_DAY, calendar.getActualMaximum(Calendar.HOUR_OF_DAY));
+        calendar.set(Calendar.MINUTE, calendar.getActualMaximum(Calendar.MINUTE));
+        calendar.set(Calendar.SECOND, calendar.getActualMaximum(Calendar.SECOND));
+        calendar.set(Calendar.MILLISECOND, calendar.getActualMaximum(Calendar.MILLISECOND));
+        long endOfDay = calendar.getTimeInMillis();
+        return new long[]{startOfDay, endOfDay};
+    }
+}
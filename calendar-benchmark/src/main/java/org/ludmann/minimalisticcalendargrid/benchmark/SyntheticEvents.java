@@ -0,0 +1,102 @@
+package org.ludmann.minimalisticcalendargrid.benchmark;
+
+import org.ludmann.minimalisticcalendargrid.core.CalendarMath;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+/**
+ * Reproducible instances of a month grid, sorted by begin like the result of the instances query.
+ * <p/>
+ * The mix is roughly 15 % all-day events, 10 % multi-day events, 20 % instances of weekly recurring events and 55 %
+ * ordinary events of half an hour up to three hours.
+ *
+ * @author Cornelius Ludmann
+ */
+public final class SyntheticEvents {
+
+    private static final long HOUR_IN_MILLIS = 60L * 60 * 1000;
+
+    private final long[] begin;
+    private final long[] end;
+
+    private SyntheticEvents(long[] begin, long[] end) {
+        this.begin = begin;
+        this.end = end;
+    }
+
+    /**
+     * @param count    Number of instances.
+     * @param firstDay First day of the grid (epoch day).
+     * @param days     Number of days of the grid.
+     * @param seed     Seed of the random generator.
+     * @return The instances.
+     */
+    public static SyntheticEvents generate(int count, long firstDay, int days, long seed) {
+        Random random = new Random(seed);
+        long[][] instances = new long[count][];
+        int i = 0;
+        while (i < count) {
+            long day = firstDay + random.nextInt(days);
+            int type = random.nextInt(100);
+            if (type < 15) {
+                // all-day events are stored at 00:00 UTC, some of them span a few days
+                long start = day * CalendarMath.DAY_IN_MILLIS;
+                int length = random.nextInt(10) == 0 ? 2 + random.nextInt(3) : 1;
+                instances[i++] = new long[]{start, start + length * CalendarMath.DAY_IN_MILLIS};
+            } else if (type < 25) {
+                long start = day * CalendarMath.DAY_IN_MILLIS + random.nextInt(24) * HOUR_IN_MILLIS;
+                instances[i++] = new long[]{start, start + (24 + random.nextInt(96)) * HOUR_IN_MILLIS};
+            } else if (type < 45) {
+                // the instances of a weekly series within the grid
+                long start = getTimedStart(random, day);
+                long duration = getTimedDuration(random);
+                for (long series = start - (day - firstDay) / 7 * 7 * CalendarMath.DAY_IN_MILLIS;
+                     series < (firstDay + days) * CalendarMath.DAY_IN_MILLIS && i < count;
+                     series += 7 * CalendarMath.DAY_IN_MILLIS) {
+                    instances[i++] = new long[]{series, series + duration};
+                }
+            } else {
+                long start = getTimedStart(random, day);
+                instances[i++] = new long[]{start, start + getTimedDuration(random)};
+            }
+        }
+
+        Arrays.sort(instances, new Comparator<long[]>() {
+            @Override
+            public int compare(long[] lhs, long[] rhs) {
+                return lhs[0] < rhs[0] ? -1 : (lhs[0] == rhs[0] ? 0 : 1);
+            }
+        });
+
+        long[] begin = new long[count];
+        long[] end = new long[count];
+        for (int j = 0; j < count; ++j) {
+            begin[j] = instances[j][0];
+            end[j] = instances[j][1];
+        }
+        return new SyntheticEvents(begin, end);
+    }
+
+    private static long getTimedStart(Random random, long day) {
+        // between 07:00 and 20:45 in quarter hours
+        return day * CalendarMath.DAY_IN_MILLIS + 7 * HOUR_IN_MILLIS + random.nextInt(56) * HOUR_IN_MILLIS / 4;
+    }
+
+    private static long getTimedDuration(Random random) {
+        return (1 + random.nextInt(6)) * HOUR_IN_MILLIS / 2;
+    }
+
+    public int size() {
+        return begin.length;
+    }
+
+    public long[] getBegin() {
+        return begin;
+    }
+
+    public long[] getEnd() {
+        return end;
+    }
+}
@@ -0,0 +1,218 @@
+package org.ludmann.minimalisticcalendargrid.core;
+
+import java.util.TimeZone;
+
+/**
+ * Allocation-free date arithmetic on epoch days (days since 1970-01-01) of the proleptic Gregorian calendar.
+ * <p/>
+ * Months are 0-based and the days of the week have the values of {@link java.util.Calendar} (1 = sunday, ...,
+ * 7 = saturday), so the results can be mixed with code that uses Calendar.
+ *
+ * @author Cornelius Ludmann
+ */
+public final class CalendarMath {
+
+    /**
+     * Length of a day without daylight saving time changes (e. g. in UTC).
+     */
+    public static final long DAY_IN_MILLIS = 24L * 60 * 60 * 1000;
+    /**
+     * Julian day of 1970-01-01 (the day numbers of the calendar provider are Julian days).
+     */
+    public static final int JULIAN_DAY_OF_EPOCH = 2440588;
+
+    public static final int SUNDAY = 1;
+    public static final int MONDAY = 2;
+    public static final int TUESDAY = 3;
+    public static final int WEDNESDAY = 4;
+    public static final int THURSDAY = 5;
+    public static final int FRIDAY = 6;
+    public static final int SATURDAY = 7;
+
+    /**
+     * Days from 0000-03-01 to 1970-01-01.
+     */
+    private static final long DAYS_0000_TO_1970 = 719468;
+    /**
+     * Days of a 400 years cycle.
+     */
+    private static final long DAYS_PER_ERA = 146097;
+
+    private CalendarMath() {
+
+    }
+
+    /**
+     * @param year       The year.
+     * @param month      The month (0 - 11).
+     * @param dayOfMonth The day of the month (1 - 31).
+     * @return The epoch day of the date.
+     */
+    public static long toEpochDay(int year, int month, int dayOfMonth) {
+        // years start at march, so the leap day is the last day of the year
+        long y = month < 2 ? year - 1 : year;
+        long era = floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        int monthOfYear = month < 2 ? month + 10 : month - 2;
+        long dayOfYear = (153 * monthOfYear + 2) / 5 + dayOfMonth - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * DAYS_PER_ERA + dayOfEra - DAYS_0000_TO_1970;
+    }
+
+    /**
+     * @param epochDay The epoch day.
+     * @return The year of the day.
+     */
+    public static int getYear(long epochDay) {
+        long dayOfEra = getDayOfEra(epochDay);
+        long yearOfEra = getYearOfEra(dayOfEra);
+        int monthOfYear = getMonthOfYear(dayOfEra, yearOfEra);
+        long year = yearOfEra + floorDiv(epochDay + DAYS_0000_TO_1970, DAYS_PER_ERA) * 400;
+        return (int) (monthOfYear >= 10 ? year + 1 : year);
+    }
+
+    /**
+     * @param epochDay The epoch day.
+     * @return The month of the day (0 - 11).
+     */
+    public static int getMonth(long epochDay) {
+        long dayOfEra = getDayOfEra(epochDay);
+        int monthOfYear = getMonthOfYear(dayOfEra, getYearOfEra(dayOfEra));
+        return monthOfYear < 10 ? monthOfYear + 2 : monthOfYear - 10;
+    }
+
+    /**
+     * @param epochDay The epoch day.
+     * @return The day of the month (1 - 31).
+     */
+    public static int getDayOfMonth(long epochDay) {
+        long dayOfEra = getDayOfEra(epochDay);
+        long yearOfEra = getYearOfEra(dayOfEra);
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int monthOfYear = (int) ((5 * dayOfYear + 2) / 153);
+        return (int) (dayOfYear - (153 * monthOfYear + 2) / 5 + 1);
+    }
+
+    /**
+     * @param epochDay The epoch day.
+     * @return The day of the week ({@link #SUNDAY} - {@link #SATURDAY}).
+     */
+    public static int getDayOfWeek(long epochDay) {
+        // 1970-01-01 was a thursday
+        return (int) floorMod(epochDay + THURSDAY - 1, 7) + 1;
+    }
+
+    /**
+     * @param epochDay The epoch day.
+     * @return True if the day is a saturday or a sunday.
+     */
+    public static boolean isWeekend(long epochDay) {
+        int dayOfWeek = getDayOfWeek(epochDay);
+        return dayOfWeek == SATURDAY || dayOfWeek == SUNDAY;
+    }
+
+    /**
+     * @param year The year.
+     * @return True if the year is a leap year.
+     */
+    public static boolean isLeapYear(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    /**
+     * @param year  The year.
+     * @param month The month (0 - 11).
+     * @return The number of days of the month.
+     */
+    public static int getLengthOfMonth(int year, int month) {
+        switch (month) {
+            case 1:
+                return isLeapYear(year) ? 29 : 28;
+            case 3:
+            case 5:
+            case 8:
+            case 10:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /**
+     * @param millis   A timestamp.
+     * @param timeZone The time zone of the day.
+     * @return The epoch day of the timestamp in the time zone.
+     */
+    public static long getEpochDay(long millis, TimeZone timeZone) {
+        return floorDiv(millis + timeZone.getOffset(millis), DAY_IN_MILLIS);
+    }
+
+    /**
+     * @param epochDay The epoch day.
+     * @param timeZone The time zone of the day.
+     * @return The timestamp of 00:00 of the day in the time zone or, if daylight saving time starts at midnight and
+     * 00:00 does not exist, the first instant of the day (the end of the gap). If 00:00 happened twice, the first one.
+     */
+    public static long getStartOfDay(long epochDay, TimeZone timeZone) {
+        long localMidnight = epochDay * DAY_IN_MILLIS;
+        // the offset at midnight may differ from the offset of the guess, if daylight saving time changes that day
+        long guess = localMidnight - timeZone.getOffset(localMidnight);
+        long start = localMidnight - timeZone.getOffset(guess);
+        // if the clocks went back over midnight, 00:00 happened twice and start is the second one: the first one
+        // has the offset before the change
+        long earlier = localMidnight - timeZone.getOffset(start - 1);
+        if (earlier < start && earlier + timeZone.getOffset(earlier) == localMidnight)
+            return earlier;
+        if (getEpochDay(start, timeZone) >= epochDay)
+            return start;
+
+        // midnight is in the gap: start is still on the previous day (with the offset before the change) and
+        // midnight with that offset is after the change, so the change is between them
+        int offsetBefore = timeZone.getOffset(start);
+        long before = start;
+        long after = localMidnight - offsetBefore;
+        while (after - before > 1) {
+            long middle = before + (after - before) / 2;
+            if (timeZone.getOffset(middle) == offsetBefore) {
+                before = middle;
+            } else {
+                after = middle;
+            }
+        }
+        return after;
+    }
+
+    /**
+     * Integer division that rounds to negative infinity.
+     */
+    public static long floorDiv(long x, long y) {
+        long r = x / y;
+        if ((x % y != 0) && ((x ^ y) < 0)) {
+            --r;
+        }
+        return r;
+    }
+
+    /**
+     * Modulo with the sign of the divisor.
+     */
+    public static long floorMod(long x, long y) {
+        return x - floorDiv(x, y) * y;
+    }
+
+    private static long getDayOfEra(long epochDay) {
+        return floorMod(epochDay + DAYS_0000_TO_1970, DAYS_PER_ERA);
+    }
+
+    private static long getYearOfEra(long dayOfEra) {
+        return (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / (DAYS_PER_ERA - 1)) / 365;
+    }
+
+    /**
+     * @return The month of a year that starts at march (0 = march, ..., 11 = february).
+     */
+    private static int getMonthOfYear(long dayOfEra, long yearOfEra) {
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        return (int) ((5 * dayOfYear + 2) / 153);
+    }
+}
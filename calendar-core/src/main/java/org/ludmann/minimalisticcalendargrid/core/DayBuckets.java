@@ -0,0 +1,152 @@
+package org.ludmann.minimalisticcalendargrid.core;
+
+/**
+ * Index that maps the instances of a month to the cells of the calendar grid.
+ * <p/>
+ * The index is built with a single sweep over the instances, either from the timestamps or from inclusive day numbers
+ * (e. g. the cells of the bars of a month). Each instance is added to every cell it overlaps, so multi-day and all-day events show up in all of their
+ * days. Within a cell the instances keep their order.
+ *
+ * @author Cornelius Ludmann
+ */
+public class DayBuckets {
+
+    /**
+     * Start of the bucket of each cell in {@link #positions}. Has one more entry than there are cells.
+     */
+    private final int[] offsets;
+    /**
+     * The instance indices of all buckets, one after another.
+     */
+    private final int[] positions;
+    /**
+     * First and last cell of each instance, clamped to the grid.
+     */
+    private final int[] firstCells;
+    private final int[] lastCells;
+
+    private DayBuckets(int[] offsets, int[] positions, int[] firstCells, int[] lastCells) {
+        this.offsets = offsets;
+        this.positions = positions;
+        this.firstCells = firstCells;
+        this.lastCells = lastCells;
+    }
+
+    /**
+     * Sweeps the instances once and assigns each instance to the cells it overlaps. The timestamps of the grid are
+     * UTC, so every day has {@link CalendarMath#DAY_IN_MILLIS}.
+     *
+     * @param begin     Begin of each instance (sorted).
+     * @param end       End of each instance.
+     * @param count     Number of instances.
+     * @param gridStart Timestamp of the first cell (00:00 UTC).
+     * @param cellCount Number of cells of the grid.
+     * @return The index.
+     */
+    public static DayBuckets build(long[] begin, long[] end, int count, long gridStart, int cellCount) {
+        int[] firstCells = new int[count];
+        int[] lastCells = new int[count];
+
+        for (int position = 0; position < count; ++position) {
+            long dtstart = begin[position];
+            long dtend = end[position];
+
+            // same rule as before: an event belongs to a day if it starts before the day ends and ends after the
+            // start of the day (events ending at midnight do not belong to the next day)
+            firstCells[position] = (int) Math.min(cellCount, Math.max(0, CalendarMath.floorDiv(dtstart - gridStart, CalendarMath.DAY_IN_MILLIS)));
+            lastCells[position] = (int) Math.max(-1, Math.min(cellCount - 1, CalendarMath.floorDiv(dtend - 1 - gridStart, CalendarMath.DAY_IN_MILLIS)));
+        }
+
+        return fill(firstCells, lastCells, count, cellCount);
+    }
+
+    /**
+     * Assigns each instance to the cells of its days. Like the START_DAY and END_DAY columns of the calendar provider,
+     * the days are inclusive; an event that ends at midnight already ends on the previous day.
+     *
+     * @param startDay  First day of each instance.
+     * @param endDay    Last day of each instance.
+     * @param count     Number of instances.
+     * @param firstDay  The day of the first cell (same numbering as the days of the instances).
+     * @param cellCount Number of cells of the grid.
+     * @return The index.
+     */
+    public static DayBuckets buildFromDays(int[] startDay, int[] endDay, int count, int firstDay, int cellCount) {
+        int[] firstCells = new int[count];
+        int[] lastCells = new int[count];
+
+        for (int position = 0; position < count; ++position) {
+            firstCells[position] = Math.min(cellCount, Math.max(0, startDay[position] - firstDay));
+            lastCells[position] = Math.max(-1, Math.min(cellCount - 1, endDay[position] - firstDay));
+        }
+
+        return fill(firstCells, lastCells, count, cellCount);
+    }
+
+    /**
+     * Counts the instances per cell and fills the buckets in the order of the instances.
+     */
+    private static DayBuckets fill(int[] firstCells, int[] lastCells, int count, int cellCount) {
+        int[] offsets = new int[cellCount + 1];
+        for (int position = 0; position < count; ++position) {
+            for (int cell = firstCells[position]; cell <= lastCells[position]; ++cell) {
+                ++offsets[cell + 1];
+            }
+        }
+
+        for (int cell = 0; cell < cellCount; ++cell) {
+            offsets[cell + 1] += offsets[cell];
+        }
+
+        int[] positions = new int[offsets[cellCount]];
+        int[] fill = new int[cellCount];
+        for (int position = 0; position < count; ++position) {
+            for (int cell = firstCells[position]; cell <= lastCells[position]; ++cell) {
+                positions[offsets[cell] + fill[cell]++] = position;
+            }
+        }
+
+        return new DayBuckets(offsets, positions, firstCells, lastCells);
+    }
+
+    /**
+     * @param cell The cell index (row * 7 + column).
+     * @return The number of instances of this cell.
+     */
+    public int getCount(int cell) {
+        return offsets[cell + 1] - offsets[cell];
+    }
+
+    /**
+     * @param cell  The cell index (row * 7 + column).
+     * @param index Index of the instance within the cell.
+     * @return The index of the instance.
+     */
+    public int getPosition(int cell, int index) {
+        return positions[offsets[cell] + index];
+    }
+
+    /**
+     * @param position The index of the instance.
+     * @return The first cell of the instance (clamped to the grid).
+     */
+    public int getFirstCell(int position) {
+        return firstCells[position];
+    }
+
+    /**
+     * @param position The index of the instance.
+     * @return The last cell of the instance (clamped to the grid).
+     */
+    public int getLastCell(int position) {
+        return lastCells[position];
+    }
+
+    /**
+     * @param position The index of the instance.
+     * @return True if the instance covers more than one cell of the grid.
+     */
+    public boolean isMultiDay(int position) {
+        return lastCells[position] > firstCells[position];
+    }
+}
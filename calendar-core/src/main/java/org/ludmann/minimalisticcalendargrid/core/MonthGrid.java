@@ -0,0 +1,108 @@
+package org.ludmann.minimalisticcalendargrid.core;
+
+/**
+ * Geometry of the month grid: the weeks that cover a month, their week numbers and the position of a day.
+ * <p/>
+ * All days are epoch days (see {@link CalendarMath}). The first day of the week and the minimal number of days in the
+ * first week of the year are configurable and have the meaning of the corresponding {@link java.util.Calendar}
+ * settings.
+ *
+ * @author Cornelius Ludmann
+ */
+public final class MonthGrid {
+
+    public static final int DAYS_PER_WEEK = 7;
+
+    private final int firstDayOfWeek;
+    private final int minimalDaysInFirstWeek;
+
+    /**
+     * @param firstDayOfWeek         The first day of the week ({@link CalendarMath#SUNDAY} - {@link CalendarMath#SATURDAY}).
+     * @param minimalDaysInFirstWeek Minimal number of days of the year in its first week (1 - 7).
+     */
+    public MonthGrid(int firstDayOfWeek, int minimalDaysInFirstWeek) {
+        if (firstDayOfWeek < CalendarMath.SUNDAY || firstDayOfWeek > CalendarMath.SATURDAY)
+            throw new IllegalArgumentException("invalid first day of week: " + firstDayOfWeek);
+        if (minimalDaysInFirstWeek < 1 || minimalDaysInFirstWeek > DAYS_PER_WEEK)
+            throw new IllegalArgumentException("invalid minimal days in first week: " + minimalDaysInFirstWeek);
+        this.firstDayOfWeek = firstDayOfWeek;
+        this.minimalDaysInFirstWeek = minimalDaysInFirstWeek;
+    }
+
+    public int getFirstDayOfWeek() {
+        return firstDayOfWeek;
+    }
+
+    public int getMinimalDaysInFirstWeek() {
+        return minimalDaysInFirstWeek;
+    }
+
+    /**
+     * @param epochDay The epoch day.
+     * @return The column of the day in the grid (0 - 6).
+     */
+    public int getColumn(long epochDay) {
+        return (CalendarMath.getDayOfWeek(epochDay) - firstDayOfWeek + DAYS_PER_WEEK) % DAYS_PER_WEEK;
+    }
+
+    /**
+     * @param year  The year.
+     * @param month The month (0 - 11).
+     * @return The first day of the grid: the first 'first day of week' on or before the first day of the month.
+     */
+    public long getFirstDay(int year, int month) {
+        long firstOfMonth = CalendarMath.toEpochDay(year, month, 1);
+        return firstOfMonth - getColumn(firstOfMonth);
+    }
+
+    /**
+     * @param year  The year.
+     * @param month The month (0 - 11).
+     * @return The last day of the grid: the last day of the week that contains the last day of the month.
+     */
+    public long getLastDay(int year, int month) {
+        long lastOfMonth = CalendarMath.toEpochDay(year, month, CalendarMath.getLengthOfMonth(year, month));
+        return lastOfMonth + DAYS_PER_WEEK - 1 - getColumn(lastOfMonth);
+    }
+
+    /**
+     * @param year  The year.
+     * @param month The month (0 - 11).
+     * @return The number of weeks of the grid (4 - 6).
+     */
+    public int getRowCount(int year, int month) {
+        return (int) ((getLastDay(year, month) - getFirstDay(year, month) + 1) / DAYS_PER_WEEK);
+    }
+
+    /**
+     * @param epochDay The epoch day.
+     * @return The week of the year of the day (like {@link java.util.Calendar#WEEK_OF_YEAR}).
+     */
+    public int getWeekOfYear(long epochDay) {
+        int year = CalendarMath.getYear(epochDay);
+        long firstWeekStart = getFirstWeekStart(year);
+        if (epochDay < firstWeekStart) {
+            // last week of the previous year
+            firstWeekStart = getFirstWeekStart(year - 1);
+        } else if (epochDay >= getFirstWeekStart(year + 1)) {
+            // first week of the next year
+            return 1;
+        }
+        return (int) ((epochDay - firstWeekStart) / DAYS_PER_WEEK) + 1;
+    }
+
+    /**
+     * @param year The year.
+     * @return The first day of the first week of the year.
+     */
+    private long getFirstWeekStart(int year) {
+        long firstOfYear = CalendarMath.toEpochDay(year, 0, 1);
+        int column = getColumn(firstOfYear);
+        long weekStart = firstOfYear - column;
+        if (DAYS_PER_WEEK - column < minimalDaysInFirstWeek) {
+            // the week has too few days of the new year: it's the last week of the previous year
+            weekStart += DAYS_PER_WEEK;
+        }
+        return weekStart;
+    }
+}
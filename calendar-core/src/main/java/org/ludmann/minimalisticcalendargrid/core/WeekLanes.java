@@ -0,0 +1,169 @@
+package org.ludmann.minimalisticcalendargrid.core;
+
+import java.util.Arrays;
+
+/**
+ * Lanes of the multi-day instances in the week rows of the calendar grid.
+ * <p/>
+ * Every instance that covers more than one cell (see {@link DayBuckets#isMultiDay(int)}) becomes one bar per week row it
+ * touches. The bars of a row are packed into lanes with a single pass in the order of their first cell (interval
+ * partitioning): each bar takes the lowest lane that is free at its first cell, so a row needs no more lanes than
+ * there are bars on its busiest day. A bar keeps its lane over all of its cells of the row, so it can be drawn as one
+ * continuous bar.
+ *
+ * @author Cornelius Ludmann
+ */
+public class WeekLanes {
+
+    private final int[] rowOffsets;
+    private final int[] positions;
+    private final int[] firstCells;
+    private final int[] lastCells;
+    private final int[] lanes;
+    /**
+     * Number of lanes in use at each cell (highest lane + 1).
+     */
+    private final int[] cellLanes;
+
+    private WeekLanes(int[] rowOffsets, int[] positions, int[] firstCells, int[] lastCells, int[] lanes,
+                      int[] cellLanes) {
+        this.rowOffsets = rowOffsets;
+        this.positions = positions;
+        this.firstCells = firstCells;
+        this.lastCells = lastCells;
+        this.lanes = lanes;
+        this.cellLanes = cellLanes;
+    }
+
+    /**
+     * Assigns the lanes of the multi-day instances of the first rows of the grid.
+     *
+     * @param buckets  The instances of the grid.
+     * @param rowCount Number of rows to assign (the cells of the rows must be covered by the buckets).
+     * @return The bars of the rows.
+     */
+    public static WeekLanes build(DayBuckets buckets, int rowCount) {
+        int cellCount = rowCount * MonthGrid.DAYS_PER_WEEK;
+
+        // a bar starts at the first cell of the instance or at the first cell of a following row
+        int barCount = 0;
+        for (int cell = 0; cell < cellCount; ++cell) {
+            for (int i = 0; i < buckets.getCount(cell); ++i) {
+                if (isBarStart(buckets, buckets.getPosition(cell, i), cell))
+                    ++barCount;
+            }
+        }
+
+        int[] rowOffsets = new int[rowCount + 1];
+        int[] positions = new int[barCount];
+        int[] firstCells = new int[barCount];
+        int[] lastCells = new int[barCount];
+        int[] lanes = new int[barCount];
+        int[] cellLanes = new int[cellCount];
+        // last cell of the bar in each lane of the current row
+        int[] laneEnds = new int[8];
+
+        int bar = 0;
+        for (int row = 0; row < rowCount; ++row) {
+            rowOffsets[row] = bar;
+            int rowEnd = (row + 1) * MonthGrid.DAYS_PER_WEEK - 1;
+            int laneCount = 0;
+            for (int cell = row * MonthGrid.DAYS_PER_WEEK; cell <= rowEnd; ++cell) {
+                for (int i = 0; i < buckets.getCount(cell); ++i) {
+                    int position = buckets.getPosition(cell, i);
+                    if (!isBarStart(buckets, position, cell))
+                        continue;
+
+                    int lane = 0;
+                    while (lane < laneCount && laneEnds[lane] >= cell) {
+                        ++lane;
+                    }
+                    if (lane == laneCount) {
+                        if (laneCount == laneEnds.length) {
+                            laneEnds = Arrays.copyOf(laneEnds, 2 * laneCount);
+                        }
+                        ++laneCount;
+                    }
+                    int lastCell = Math.min(buckets.getLastCell(position), rowEnd);
+                    laneEnds[lane] = lastCell;
+
+                    positions[bar] = position;
+                    firstCells[bar] = cell;
+                    lastCells[bar] = lastCell;
+                    lanes[bar] = lane;
+                    ++bar;
+                    for (int barCell = cell; barCell <= lastCell; ++barCell) {
+                        cellLanes[barCell] = Math.max(cellLanes[barCell], lane + 1);
+                    }
+                }
+            }
+        }
+        rowOffsets[rowCount] = bar;
+
+        return new WeekLanes(rowOffsets, positions, firstCells, lastCells, lanes, cellLanes);
+    }
+
+    private static boolean isBarStart(DayBuckets buckets, int position, int cell) {
+        return buckets.isMultiDay(position)
+                && (buckets.getFirstCell(position) == cell || cell % MonthGrid.DAYS_PER_WEEK == 0);
+    }
+
+    /**
+     * @param row The row index.
+     * @return Index of the first bar of the row; the bars of a row are ordered by their first cell.
+     */
+    public int getFirstBar(int row) {
+        return rowOffsets[row];
+    }
+
+    /**
+     * @param row The row index.
+     * @return Index after the last bar of the row.
+     */
+    public int getEndBar(int row) {
+        return rowOffsets[row + 1];
+    }
+
+    /**
+     * @return Number of bars of all rows.
+     */
+    public int getBarCount() {
+        return positions.length;
+    }
+
+    /**
+     * @param bar The bar index.
+     * @return The index of the instance of the bar.
+     */
+    public int getPosition(int bar) {
+        return positions[bar];
+    }
+
+    public int getFirstCell(int bar) {
+        return firstCells[bar];
+    }
+
+    /**
+     * @param bar The bar index.
+     * @return The last cell of the bar (in the same row as the first cell).
+     */
+    public int getLastCell(int bar) {
+        return lastCells[bar];
+    }
+
+    /**
+     * @param bar The bar index.
+     * @return The lane of the bar (0 is the topmost lane).
+     */
+    public int getLane(int bar) {
+        return lanes[bar];
+    }
+
+    /**
+     * @param cell The cell index (row * 7 + column).
+     * @return Number of lanes in use at the cell.
+     */
+    public int getLaneCount(int cell) {
+        return cellLanes[cell];
+    }
+}
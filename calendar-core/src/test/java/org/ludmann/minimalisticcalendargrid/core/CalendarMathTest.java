@@ -0,0 +1,146 @@
+package org.ludmann.minimalisticcalendargrid.core;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link CalendarMath} against {@link GregorianCalendar}.
+ *
+ * @author Cornelius Ludmann
+ */
+public class CalendarMathTest {
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    /**
+     * Zones with daylight saving time starting at midnight (Sao Paulo, Santiago, Asuncion, Beirut), ending over
+     * midnight (Amman, Tunis) and changing at night (Berlin, New York).
+     */
+    private static final String[] TIME_ZONES = new String[]{
+            "UTC", "Europe/Berlin", "America/New_York", "America/Sao_Paulo", "America/Santiago", "America/Asuncion",
+            "Asia/Beirut", "Asia/Amman", "Africa/Tunis", "America/Havana", "America/St_Johns", "Asia/Tehran",
+            "Australia/Lord_Howe"
+    };
+
+    @Test
+    public void epochDayRoundTrip() {
+        GregorianCalendar calendar = newGregorianCalendar(UTC);
+        for (long epochDay = CalendarMath.toEpochDay(1600, 0, 1); epochDay < CalendarMath.toEpochDay(2400, 0, 1);
+             ++epochDay) {
+            calendar.setTimeInMillis(epochDay * CalendarMath.DAY_IN_MILLIS);
+            int year = CalendarMath.getYear(epochDay);
+            int month = CalendarMath.getMonth(epochDay);
+            int dayOfMonth = CalendarMath.getDayOfMonth(epochDay);
+            assertEquals(calendar.get(Calendar.YEAR), year);
+            assertEquals(calendar.get(Calendar.MONTH), month);
+            assertEquals(calendar.get(Calendar.DAY_OF_MONTH), dayOfMonth);
+            assertEquals(calendar.get(Calendar.DAY_OF_WEEK), CalendarMath.getDayOfWeek(epochDay));
+            assertEquals(epochDay, CalendarMath.toEpochDay(year, month, dayOfMonth));
+        }
+    }
+
+    @Test
+    public void epochDayBeforeEpoch() {
+        assertEquals(0, CalendarMath.toEpochDay(1970, 0, 1));
+        assertEquals(-1, CalendarMath.toEpochDay(1969, 11, 31));
+        assertEquals(-1, CalendarMath.getEpochDay(-1, UTC));
+        assertEquals(CalendarMath.THURSDAY, CalendarMath.getDayOfWeek(0));
+        assertEquals(CalendarMath.WEDNESDAY, CalendarMath.getDayOfWeek(-1));
+    }
+
+    @Test
+    public void lengthOfMonth() {
+        GregorianCalendar calendar = newGregorianCalendar(UTC);
+        for (int year = 1600; year < 2400; ++year) {
+            for (int month = 0; month < 12; ++month) {
+                calendar.clear();
+                calendar.set(year, month, 1);
+                assertEquals(calendar.getActualMaximum(Calendar.DAY_OF_MONTH),
+                        CalendarMath.getLengthOfMonth(year, month));
+            }
+        }
+    }
+
+    @Test
+    public void epochDayInTimeZone() {
+        for (String id : TIME_ZONES) {
+            TimeZone timeZone = TimeZone.getTimeZone(id);
+            GregorianCalendar calendar = newGregorianCalendar(timeZone);
+            // every 7 hours from 1990 to 2030
+            for (long millis = 631152000000L; millis < 1893456000000L; millis += 7 * 60 * 60 * 1000L) {
+                calendar.setTimeInMillis(millis);
+                long epochDay = CalendarMath.toEpochDay(calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH),
+                        calendar.get(Calendar.DAY_OF_MONTH));
+                assertEquals(id, epochDay, CalendarMath.getEpochDay(millis, timeZone));
+            }
+        }
+    }
+
+    @Test
+    public void startOfDayIsFirstInstantOfDay() {
+        for (String id : TIME_ZONES) {
+            TimeZone timeZone = TimeZone.getTimeZone(id);
+            for (long epochDay = CalendarMath.toEpochDay(1990, 0, 1); epochDay < CalendarMath.toEpochDay(2030, 0, 1);
+                 ++epochDay) {
+                long start = CalendarMath.getStartOfDay(epochDay, timeZone);
+                assertEquals(id + " " + epochDay, epochDay, CalendarMath.getEpochDay(start, timeZone));
+                assertTrue(id + " " + epochDay, CalendarMath.getEpochDay(start - 1, timeZone) < epochDay);
+            }
+        }
+    }
+
+    @Test
+    public void startOfDayInGap() {
+        // 2018-11-04 00:00 did not exist in Sao Paulo: the clocks went from 23:59:59 to 01:00 (03:00 UTC)
+        TimeZone saoPaulo = TimeZone.getTimeZone("America/Sao_Paulo");
+        long epochDay = CalendarMath.toEpochDay(2018, 10, 4);
+        assertEquals(epochDay * CalendarMath.DAY_IN_MILLIS + 3 * 60 * 60 * 1000L,
+                CalendarMath.getStartOfDay(epochDay, saoPaulo));
+        // the next day starts at midnight again
+        assertEquals((epochDay + 1) * CalendarMath.DAY_IN_MILLIS + 2 * 60 * 60 * 1000L,
+                CalendarMath.getStartOfDay(epochDay + 1, saoPaulo));
+    }
+
+    @Test
+    public void startOfDayInOverlap() {
+        // 1995-09-15 01:00 in Amman went back to 00:00: the day started at 00:00 UTC+3 (21:00 UTC), not at the second
+        // 00:00 UTC+2
+        TimeZone amman = TimeZone.getTimeZone("Asia/Amman");
+        long epochDay = CalendarMath.toEpochDay(1995, 8, 15);
+        assertEquals(epochDay * CalendarMath.DAY_IN_MILLIS - 3 * 60 * 60 * 1000L,
+                CalendarMath.getStartOfDay(epochDay, amman));
+        // 1990-09-30 01:00 in Tunis went back to 00:00 as well
+        TimeZone tunis = TimeZone.getTimeZone("Africa/Tunis");
+        epochDay = CalendarMath.toEpochDay(1990, 8, 30);
+        assertEquals(epochDay * CalendarMath.DAY_IN_MILLIS - 2 * 60 * 60 * 1000L,
+                CalendarMath.getStartOfDay(epochDay, tunis));
+        assertEquals(epochDay - 1, CalendarMath.getEpochDay(CalendarMath.getStartOfDay(epochDay, tunis) - 1, tunis));
+    }
+
+    @Test
+    public void startOfDayWithoutChange() {
+        TimeZone berlin = TimeZone.getTimeZone("Europe/Berlin");
+        // 2014-03-30: daylight saving time starts at 02:00, midnight is still CET
+        long epochDay = CalendarMath.toEpochDay(2014, 2, 30);
+        assertEquals(epochDay * CalendarMath.DAY_IN_MILLIS - 60 * 60 * 1000L,
+                CalendarMath.getStartOfDay(epochDay, berlin));
+        assertEquals((epochDay + 1) * CalendarMath.DAY_IN_MILLIS - 2 * 60 * 60 * 1000L,
+                CalendarMath.getStartOfDay(epochDay + 1, berlin));
+    }
+
+    /**
+     * @return A calendar with Gregorian rules for all dates (like {@link CalendarMath}).
+     */
+    private static GregorianCalendar newGregorianCalendar(TimeZone timeZone) {
+        GregorianCalendar calendar = new GregorianCalendar(timeZone);
+        calendar.setGregorianChange(new Date(Long.MIN_VALUE));
+        return calendar;
+    }
+}
@@ -0,0 +1,110 @@
+package org.ludmann.minimalisticcalendargrid.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link DayBuckets}.
+ *
+ * @author Cornelius Ludmann
+ */
+public class DayBucketsTest {
+
+    private static final long DAY = CalendarMath.DAY_IN_MILLIS;
+    private static final long HOUR = 60 * 60 * 1000L;
+    private static final long GRID_START = CalendarMath.toEpochDay(2014, 2, 31) * DAY;
+    private static final int CELL_COUNT = 42;
+
+    @Test
+    public void singleDay() {
+        DayBuckets buckets = DayBuckets.build(new long[]{GRID_START + 2 * DAY + 10 * HOUR},
+                new long[]{GRID_START + 2 * DAY + 11 * HOUR}, 1, GRID_START, CELL_COUNT);
+        assertCells(buckets, 0, 2, 2);
+        assertEquals(0, buckets.getCount(1));
+        assertEquals(1, buckets.getCount(2));
+        assertEquals(0, buckets.getPosition(2, 0));
+        assertFalse(buckets.isMultiDay(0));
+    }
+
+    @Test
+    public void multiDay() {
+        // all-day event over 3 days and a timed event over midnight
+        DayBuckets buckets = DayBuckets.build(new long[]{GRID_START + 5 * DAY, GRID_START + 6 * DAY + 22 * HOUR},
+                new long[]{GRID_START + 8 * DAY, GRID_START + 7 * DAY + 2 * HOUR}, 2, GRID_START, CELL_COUNT);
+        assertCells(buckets, 0, 5, 7);
+        assertCells(buckets, 1, 6, 7);
+        assertTrue(buckets.isMultiDay(0));
+        assertTrue(buckets.isMultiDay(1));
+        assertEquals(1, buckets.getCount(5));
+        assertEquals(2, buckets.getCount(6));
+        assertEquals(2, buckets.getCount(7));
+        assertEquals(0, buckets.getCount(8));
+        // the order of the instances is kept within a cell
+        assertEquals(0, buckets.getPosition(7, 0));
+        assertEquals(1, buckets.getPosition(7, 1));
+    }
+
+    @Test
+    public void endAtMidnight() {
+        DayBuckets buckets = DayBuckets.build(new long[]{GRID_START + 3 * DAY + 20 * HOUR},
+                new long[]{GRID_START + 4 * DAY}, 1, GRID_START, CELL_COUNT);
+        assertCells(buckets, 0, 3, 3);
+        assertEquals(0, buckets.getCount(4));
+    }
+
+    @Test
+    public void clampedToGrid() {
+        long gridEnd = GRID_START + CELL_COUNT * DAY;
+        DayBuckets buckets = DayBuckets.build(
+                new long[]{GRID_START - 2 * DAY, gridEnd - HOUR, gridEnd + DAY, GRID_START - 3 * DAY},
+                new long[]{GRID_START + DAY + HOUR, gridEnd + 2 * DAY, gridEnd + 2 * DAY, GRID_START - DAY},
+                4, GRID_START, CELL_COUNT);
+        assertCells(buckets, 0, 0, 1);
+        assertCells(buckets, 1, CELL_COUNT - 1, CELL_COUNT - 1);
+        // instances outside of the grid are in no cell
+        assertFalse(buckets.isMultiDay(2));
+        assertFalse(buckets.isMultiDay(3));
+        int total = 0;
+        for (int cell = 0; cell < CELL_COUNT; ++cell) {
+            total += buckets.getCount(cell);
+        }
+        assertEquals(3, total);
+    }
+
+    @Test
+    public void fromDays() {
+        int firstDay = 2456748;
+        DayBuckets buckets = DayBuckets.buildFromDays(new int[]{firstDay - 1, firstDay + 4, firstDay + 41},
+                new int[]{firstDay + 1, firstDay + 4, firstDay + 45}, 3, firstDay, CELL_COUNT);
+        assertCells(buckets, 0, 0, 1);
+        assertCells(buckets, 1, 4, 4);
+        assertCells(buckets, 2, CELL_COUNT - 1, CELL_COUNT - 1);
+        assertEquals(1, buckets.getCount(0));
+        assertEquals(0, buckets.getCount(2));
+        assertEquals(1, buckets.getCount(4));
+        assertEquals(1, buckets.getCount(CELL_COUNT - 1));
+    }
+
+    @Test
+    public void empty() {
+        DayBuckets buckets = DayBuckets.build(new long[0], new long[0], 0, GRID_START, CELL_COUNT);
+        for (int cell = 0; cell < CELL_COUNT; ++cell) {
+            assertEquals(0, buckets.getCount(cell));
+        }
+    }
+
+    private static void assertCells(DayBuckets buckets, int position, int firstCell, int lastCell) {
+        assertEquals(firstCell, buckets.getFirstCell(position));
+        assertEquals(lastCell, buckets.getLastCell(position));
+        for (int cell = firstCell; cell <= lastCell; ++cell) {
+            boolean found = false;
+            for (int i = 0; i < buckets.getCount(cell); ++i) {
+                found |= buckets.getPosition(cell, i) == position;
+            }
+            assertTrue("instance " + position + " in cell " + cell, found);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package org.ludmann.minimalisticcalendargrid.core;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link MonthGrid} against {@link GregorianCalendar} for all first days of the week and minimal days in the
+ * first week.
+ *
+ * @author Cornelius Ludmann
+ */
+public class MonthGridTest {
+
+    @Test
+    public void weekOfYear() {
+        GregorianCalendar calendar = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+        calendar.setGregorianChange(new Date(Long.MIN_VALUE));
+        long firstDay = CalendarMath.toEpochDay(1995, 0, 1);
+        long lastDay = CalendarMath.toEpochDay(2035, 0, 1);
+        for (int firstDayOfWeek = CalendarMath.SUNDAY; firstDayOfWeek <= CalendarMath.SATURDAY; ++firstDayOfWeek) {
+            for (int minimalDays = 1; minimalDays <= MonthGrid.DAYS_PER_WEEK; ++minimalDays) {
+                MonthGrid grid = new MonthGrid(firstDayOfWeek, minimalDays);
+                calendar.setFirstDayOfWeek(firstDayOfWeek);
+                calendar.setMinimalDaysInFirstWeek(minimalDays);
+                for (long epochDay = firstDay; epochDay < lastDay; ++epochDay) {
+                    calendar.setTimeInMillis(epochDay * CalendarMath.DAY_IN_MILLIS);
+                    assertEquals(firstDayOfWeek + "/" + minimalDays + " " + epochDay,
+                            calendar.get(Calendar.WEEK_OF_YEAR), grid.getWeekOfYear(epochDay));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void gridCoversMonth() {
+        for (int firstDayOfWeek = CalendarMath.SUNDAY; firstDayOfWeek <= CalendarMath.SATURDAY; ++firstDayOfWeek) {
+            MonthGrid grid = new MonthGrid(firstDayOfWeek, 1);
+            for (int year = 2000; year < 2030; ++year) {
+                for (int month = 0; month < 12; ++month) {
+                    long firstOfMonth = CalendarMath.toEpochDay(year, month, 1);
+                    long lastOfMonth = firstOfMonth + CalendarMath.getLengthOfMonth(year, month) - 1;
+                    long firstDay = grid.getFirstDay(year, month);
+                    long lastDay = grid.getLastDay(year, month);
+                    int rowCount = grid.getRowCount(year, month);
+
+                    assertEquals(firstDayOfWeek, CalendarMath.getDayOfWeek(firstDay));
+                    assertEquals(0, grid.getColumn(firstDay));
+                    assertEquals(MonthGrid.DAYS_PER_WEEK - 1, grid.getColumn(lastDay));
+                    assertTrue(firstDay <= firstOfMonth && firstOfMonth - firstDay < MonthGrid.DAYS_PER_WEEK);
+                    assertTrue(lastDay >= lastOfMonth && lastDay - lastOfMonth < MonthGrid.DAYS_PER_WEEK);
+                    assertEquals(lastDay - firstDay + 1, rowCount * MonthGrid.DAYS_PER_WEEK);
+                    assertTrue(rowCount >= 4 && rowCount <= 6);
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidFirstDayOfWeek() {
+        new MonthGrid(0, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidMinimalDaysInFirstWeek() {
+        new MonthGrid(CalendarMath.MONDAY, 8);
+    }
+}